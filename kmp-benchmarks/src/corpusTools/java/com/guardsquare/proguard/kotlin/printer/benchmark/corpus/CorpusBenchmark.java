@@ -0,0 +1,203 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark.corpus;
+
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinterCli;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Runs the full pipeline of the Kotlin metadata printer command line tool
+ * over a corpus, a number of times in the same JVM, and reports the
+ * throughput in classes per second, the peak resident set size, and the
+ * time spent in garbage collection.
+ * <p>
+ * Usage: <code>CorpusBenchmark input resultsfile [--warmup n]
+ * [--iterations n] [cli options...]</code>
+ * <p>
+ * The remaining options are passed on to the command line tool, so the same
+ * corpus can for instance be measured with different numbers of threads.
+ *
+ * @author James Hamilton
+ */
+public class CorpusBenchmark
+{
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 2)
+        {
+            System.err.println("Usage: CorpusBenchmark input resultsfile [--warmup n] [--iterations n] [cli options...]");
+            System.exit(1);
+        }
+
+        File         input           = new File(args[0]);
+        File         resultsFile     = new File(args[1]);
+        int          warmupCount     = 1;
+        int          iterationCount  = 3;
+        List<String> cliArguments    = new ArrayList<>();
+
+        for (int index = 2; index < args.length; index++)
+        {
+            switch (args[index])
+            {
+                case "--warmup":     warmupCount    = Integer.parseInt(args[++index]); break;
+                case "--iterations": iterationCount = Integer.parseInt(args[++index]); break;
+                default:             cliArguments.add(args[index]);                    break;
+            }
+        }
+
+        int  classCount = classCount(input);
+        File outputFile = File.createTempFile("corpus", ".txt");
+        outputFile.deleteOnExit();
+
+        cliArguments.add("--output");
+        cliArguments.add(outputFile.getPath());
+        cliArguments.add(input.getPath());
+
+        String[] arguments = cliArguments.toArray(new String[0]);
+
+        for (int iteration = 0; iteration < warmupCount; iteration++)
+        {
+            System.out.println("Warmup " + (iteration + 1) + ": " + time(arguments) / 1_000_000L + " ms");
+        }
+
+        long         gcTimeBefore  = gcTime();
+        long         gcCountBefore = gcCount();
+        List<Double> throughputs   = new ArrayList<>(iterationCount);
+        JSONArray    times         = new JSONArray();
+
+        for (int iteration = 0; iteration < iterationCount; iteration++)
+        {
+            long   time       = time(arguments);
+            double throughput = classCount * 1_000_000_000.0 / time;
+
+            throughputs.add(throughput);
+            times.put(time / 1_000_000L);
+
+            System.out.println(String.format("Iteration %d: %d ms, %.0f classes/s", iteration + 1, time / 1_000_000L, throughput));
+        }
+
+        long gcTime  = gcTime()  - gcTimeBefore;
+        long gcCount = gcCount() - gcCountBefore;
+        long peakRss = peakResidentSetSize();
+
+        Collections.sort(throughputs);
+        double medianThroughput = throughputs.get(throughputs.size() / 2);
+
+        System.out.println(String.format("Input:      %s (%d classes)", input.getName(), classCount));
+        System.out.println(String.format("Throughput: %.0f classes/s (median of %d)", medianThroughput, iterationCount));
+        System.out.println(String.format("Peak RSS:   %s", peakRss < 0 ? "unknown" : peakRss / (1024 * 1024) + " MB"));
+        System.out.println(String.format("GC time:    %d ms in %d collections (%d ms per iteration)", gcTime, gcCount, gcTime / Math.max(iterationCount, 1)));
+
+        JSONObject results = new JSONObject();
+        results.put("input",            input.getName());
+        results.put("classes",          classCount);
+        results.put("arguments",        new JSONArray(Arrays.asList(args).subList(2, args.length)));
+        results.put("iterationMillis",  times);
+        results.put("classesPerSecond", Math.round(medianThroughput));
+        results.put("peakRssBytes",     peakRss);
+        results.put("gcMillis",         gcTime);
+        results.put("gcCount",          gcCount);
+
+        File resultsDirectory = resultsFile.getAbsoluteFile().getParentFile();
+        Files.createDirectories(resultsDirectory.toPath());
+        Files.write(resultsFile.toPath(), results.toString(2).getBytes(StandardCharsets.UTF_8));
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Runs the command line tool with the given arguments and returns the
+     * elapsed time, in nanoseconds.
+     */
+    private static long time(String[] arguments)
+    {
+        KotlinMetadataPrinterCli cli = CommandLine.populateCommand(new KotlinMetadataPrinterCli(), arguments);
+
+        long start = System.nanoTime();
+        cli.run();
+        return System.nanoTime() - start;
+    }
+
+
+    /**
+     * Returns the number of class files in the given jar.
+     */
+    private static int classCount(File input) throws IOException
+    {
+        try (ZipFile zipFile = new ZipFile(input))
+        {
+            return (int)zipFile.stream()
+                               .map(ZipEntry::getName)
+                               .filter(name -> name.endsWith(".class"))
+                               .count();
+        }
+    }
+
+
+    private static long gcTime()
+    {
+        long time = 0L;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            time += Math.max(bean.getCollectionTime(), 0L);
+        }
+        return time;
+    }
+
+
+    private static long gcCount()
+    {
+        long count = 0L;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(bean.getCollectionCount(), 0L);
+        }
+        return count;
+    }
+
+
+    /**
+     * Returns the peak resident set size of the process, in bytes, from
+     * the high water mark that Linux reports, or -1 on other platforms.
+     */
+    private static long peakResidentSetSize()
+    {
+        try
+        {
+            for (String line : Files.readAllLines(new File("/proc/self/status").toPath(), StandardCharsets.UTF_8))
+            {
+                if (line.startsWith("VmHWM:"))
+                {
+                    // The value is in kB, e.g. "VmHWM:   123456 kB".
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024L;
+                }
+            }
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            // Not available on this platform.
+        }
+        return -1L;
+    }
+}
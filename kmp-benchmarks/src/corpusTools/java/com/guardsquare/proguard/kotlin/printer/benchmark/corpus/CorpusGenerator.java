@@ -0,0 +1,309 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark.corpus;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates the Kotlin sources of a large synthetic corpus, to measure the
+ * throughput of the printer on inputs the size of large apps, without
+ * depending on proprietary apps.
+ * <p>
+ * The corpus consists of packages with data classes, sealed hierarchies,
+ * file facades with type aliases, and multi-file facades, with deeply
+ * generic types, annotations, and lambdas. Compiled with
+ * <code>-Xlambdas=class</code>, each lambda becomes a synthetic class.
+ * The generator stops once the estimated number of class files reaches
+ * the requested number of classes.
+ * <p>
+ * Usage: <code>CorpusGenerator outputdir [--classes n] [--generics-depth n]
+ * [--annotations n] [--sealed-subclasses n] [--lambdas n]
+ * [--multi-file-parts n] [--seed n]</code>
+ *
+ * @author James Hamilton
+ */
+public class CorpusGenerator
+{
+    private static final int      UNITS_PER_PACKAGE = 25;
+    private static final String[] BASIC_TYPES       = new String[] { "Int", "String?", "Long", "Boolean", "Double", "Any?" };
+    private static final String[] LEVELS            = new String[] { "Level.LOW", "Level.MEDIUM", "Level.HIGH" };
+
+    private final int    classCount;
+    private final int    genericsDepth;
+    private final int    annotationCount;
+    private final int    sealedSubclassCount;
+    private final int    lambdaCount;
+    private final int    multiFilePartCount;
+    private final Random random;
+
+    private int generatedClassCount;
+
+
+    public CorpusGenerator(int  classCount,
+                           int  genericsDepth,
+                           int  annotationCount,
+                           int  sealedSubclassCount,
+                           int  lambdaCount,
+                           int  multiFilePartCount,
+                           long seed)
+    {
+        this.classCount          = classCount;
+        this.genericsDepth       = genericsDepth;
+        this.annotationCount     = annotationCount;
+        this.sealedSubclassCount = sealedSubclassCount;
+        this.lambdaCount         = lambdaCount;
+        this.multiFilePartCount  = multiFilePartCount;
+        this.random              = new Random(seed);
+    }
+
+
+    /**
+     * Writes the sources of the corpus to the given directory.
+     * @return the estimated number of class files.
+     */
+    public int generate(File outputDirectory) throws IOException
+    {
+        generatedClassCount = 0;
+
+        writeCommon(outputDirectory);
+
+        for (int packageIndex = 0; generatedClassCount < classCount; packageIndex++)
+        {
+            writePackage(outputDirectory, packageIndex);
+        }
+
+        return generatedClassCount;
+    }
+
+
+    // Small utility methods.
+
+    private void writeCommon(File outputDirectory) throws IOException
+    {
+        try (PrintWriter writer = sourceWriter(outputDirectory, "common", "Common.kt"))
+        {
+            writer.println("package corpus.common");
+            writer.println();
+            writer.println("enum class Level { LOW, MEDIUM, HIGH }");
+            writer.println();
+
+            for (int index = 0; index < Math.max(annotationCount, 1); index++)
+            {
+                writer.println("@Target(AnnotationTarget.CLASS, AnnotationTarget.FUNCTION, AnnotationTarget.PROPERTY, AnnotationTarget.VALUE_PARAMETER, AnnotationTarget.TYPE)");
+                writer.println("@Retention(AnnotationRetention.RUNTIME)");
+                writer.println("annotation class A" + index + "(val name: String, val level: Level = Level.MEDIUM, val values: IntArray = [])");
+                writer.println();
+            }
+
+            writer.println("fun invokeLater(block: () -> Unit) = block()");
+        }
+
+        generatedClassCount += 2 + Math.max(annotationCount, 1);
+    }
+
+
+    private void writePackage(File outputDirectory, int packageIndex) throws IOException
+    {
+        String packageName = "p" + packageIndex;
+
+        for (int unitIndex = 0; unitIndex < UNITS_PER_PACKAGE && generatedClassCount < classCount; unitIndex++)
+        {
+            int    index = packageIndex * UNITS_PER_PACKAGE + unitIndex;
+            String kind  = unitIndex % 4 == 2 && sealedSubclassCount > 0 ? "sealed" :
+                           unitIndex % 4 == 3                            ? "facade" :
+                                                                           "data";
+
+            try (PrintWriter writer = sourceWriter(outputDirectory, packageName, "Unit" + index + ".kt"))
+            {
+                writeHeader(writer, packageName);
+
+                switch (kind)
+                {
+                    case "sealed": writeSealedHierarchy(writer, index); break;
+                    case "facade": writeFileFacade(writer, index);      break;
+                    default:       writeDataClass(writer, index);       break;
+                }
+            }
+        }
+
+        for (int partIndex = 0; partIndex < multiFilePartCount; partIndex++)
+        {
+            try (PrintWriter writer = sourceWriter(outputDirectory, packageName, "Facade" + packageIndex + "Part" + partIndex + ".kt"))
+            {
+                writer.println("@file:JvmMultifileClass");
+                writer.println("@file:JvmName(\"Facade" + packageIndex + "\")");
+                writer.println();
+                writeHeader(writer, packageName);
+
+                writer.println(annotations("", "part" + partIndex) +
+                               "fun part" + packageIndex + "_" + partIndex + "(input: " + type(genericsDepth) + "): " + type(genericsDepth) + " = TODO()");
+            }
+        }
+
+        if (multiFilePartCount > 0)
+        {
+            generatedClassCount += 1 + multiFilePartCount;
+        }
+    }
+
+
+    private void writeHeader(PrintWriter writer, String packageName)
+    {
+        writer.println("package corpus." + packageName);
+        writer.println();
+        writer.println("import corpus.common.*");
+        writer.println();
+    }
+
+
+    private void writeDataClass(PrintWriter writer, int index)
+    {
+        String name = "C" + index;
+
+        writer.println(annotations("", name) + "data class " + name + "(");
+        writer.println("    " + annotations("", "p0") + "val p0: " + type(genericsDepth) + ",");
+        writer.println("    " + annotations("", "p1") + "var p1: " + type(genericsDepth) + ",");
+        writer.println("    val id: Long,");
+        writer.println(") {");
+        writer.println("    " + annotations("", "transform") + "fun transform(input: " + type(genericsDepth) + "): " + type(genericsDepth) + " {");
+        writeLambdas(writer, "        ");
+        writer.println("        return TODO()");
+        writer.println("    }");
+        writer.println("}");
+
+        generatedClassCount += 1 + lambdaCount;
+    }
+
+
+    private void writeSealedHierarchy(PrintWriter writer, int index)
+    {
+        String name = "S" + index;
+
+        writer.println(annotations("", name) + "sealed class " + name + "<out T> {");
+        for (int subclassIndex = 0; subclassIndex < sealedSubclassCount - 1; subclassIndex++)
+        {
+            writer.println("    " + annotations("", name + "_" + subclassIndex) +
+                           "data class Sub" + subclassIndex + "<T>(val value: " + type(genericsDepth) + ", val extra: T) : " + name + "<T>()");
+        }
+        writer.println("    object None : " + name + "<Nothing>()");
+        writer.println("}");
+
+        generatedClassCount += 1 + sealedSubclassCount;
+    }
+
+
+    private void writeFileFacade(PrintWriter writer, int index)
+    {
+        writer.println("typealias Alias" + index + " = " + type(genericsDepth));
+        writer.println();
+        writer.println("val property" + index + ": " + type(genericsDepth) + " get() = TODO()");
+        writer.println();
+        writer.println(annotations("", "function" + index) +
+                       "fun <T : Comparable<T>> function" + index + "(a: Alias" + index + ", b: T, block: (T) -> Unit): " + type(genericsDepth) + " {");
+        writeLambdas(writer, "    ");
+        writer.println("    return TODO()");
+        writer.println("}");
+
+        generatedClassCount += 1 + lambdaCount;
+    }
+
+
+    private void writeLambdas(PrintWriter writer, String indentation)
+    {
+        for (int lambdaIndex = 0; lambdaIndex < lambdaCount; lambdaIndex++)
+        {
+            writer.println(indentation + "invokeLater { println(" + lambdaIndex + ") }");
+        }
+    }
+
+
+    /**
+     * Returns the annotations for a declaration with the given name.
+     */
+    private String annotations(String indentation, String name)
+    {
+        StringBuilder annotations = new StringBuilder();
+        for (int index = 0; index < annotationCount; index++)
+        {
+            annotations.append(indentation)
+                       .append("@A").append(index)
+                       .append("(\"").append(name).append("\", ")
+                       .append(LEVELS[random.nextInt(LEVELS.length)])
+                       .append(", [").append(random.nextInt(100)).append(", ").append(random.nextInt(100)).append("]) ");
+        }
+
+        return annotations.toString();
+    }
+
+
+    /**
+     * Returns a random type with type arguments nested to the given depth.
+     */
+    private String type(int depth)
+    {
+        if (depth == 0)
+        {
+            return BASIC_TYPES[random.nextInt(BASIC_TYPES.length)];
+        }
+
+        switch (random.nextInt(5))
+        {
+            case 0:  return "List<" + type(depth - 1) + ">";
+            case 1:  return "Map<String, " + type(depth - 1) + ">";
+            case 2:  return "Set<out " + type(depth - 1) + ">";
+            case 3:  return "Pair<" + type(depth - 1) + ", " + BASIC_TYPES[random.nextInt(BASIC_TYPES.length)] + ">";
+            default: return "(" + type(depth - 1) + ") -> " + BASIC_TYPES[random.nextInt(BASIC_TYPES.length)];
+        }
+    }
+
+
+    private static PrintWriter sourceWriter(File outputDirectory, String packageName, String fileName) throws IOException
+    {
+        File directory = new File(outputDirectory, "corpus/" + packageName);
+        Files.createDirectories(directory.toPath());
+
+        return new PrintWriter(Files.newBufferedWriter(new File(directory, fileName).toPath(), StandardCharsets.UTF_8));
+    }
+
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length < 1)
+        {
+            System.err.println("Usage: CorpusGenerator outputdir [--classes n] [--generics-depth n] [--annotations n] " +
+                               "[--sealed-subclasses n] [--lambdas n] [--multi-file-parts n] [--seed n]");
+            System.exit(1);
+        }
+
+        Map<String, Long> options = new HashMap<>();
+        for (int index = 1; index + 1 < args.length; index += 2)
+        {
+            options.put(args[index], Long.parseLong(args[index + 1]));
+        }
+
+        CorpusGenerator generator =
+            new CorpusGenerator(options.getOrDefault("--classes",           40000L).intValue(),
+                                options.getOrDefault("--generics-depth",    3L).intValue(),
+                                options.getOrDefault("--annotations",       2L).intValue(),
+                                options.getOrDefault("--sealed-subclasses", 4L).intValue(),
+                                options.getOrDefault("--lambdas",           2L).intValue(),
+                                options.getOrDefault("--multi-file-parts",  3L).intValue(),
+                                options.getOrDefault("--seed",              0L));
+
+        int classCount = generator.generate(new File(args[0]));
+
+        System.out.println("Generated the sources of about " + classCount + " classes in " + args[0]);
+    }
+}
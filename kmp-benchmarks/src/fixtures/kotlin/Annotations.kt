@@ -0,0 +1,57 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.example.annotations
+
+import kotlin.reflect.KClass
+
+// Members with many Java and Kotlin annotations, with all kinds of arguments.
+
+enum class Level { LOW, MEDIUM, HIGH }
+
+@Target(AnnotationTarget.CLASS, AnnotationTarget.FUNCTION, AnnotationTarget.PROPERTY, AnnotationTarget.FIELD, AnnotationTarget.VALUE_PARAMETER)
+@Retention(AnnotationRetention.RUNTIME)
+annotation class Info(
+    val name: String,
+    val level: Level = Level.MEDIUM,
+    val tags: Array<String> = [],
+    val numbers: IntArray = [],
+    val type: KClass<*> = Any::class,
+    val ubyte: UByte = 1u,
+    val ulong: ULong = 2uL,
+)
+
+@Target(AnnotationTarget.CLASS, AnnotationTarget.FUNCTION, AnnotationTarget.PROPERTY, AnnotationTarget.FIELD, AnnotationTarget.VALUE_PARAMETER)
+@Retention(AnnotationRetention.RUNTIME)
+annotation class Nested(val info: Info, val others: Array<Info> = [])
+
+@Target(AnnotationTarget.TYPE, AnnotationTarget.TYPE_PARAMETER)
+@Retention(AnnotationRetention.RUNTIME)
+annotation class TypeInfo(val name: String, val level: Level = Level.LOW, val types: Array<KClass<*>> = [])
+
+@Info("members", Level.HIGH, ["a", "b", "c"], [1, 2, 3], String::class)
+@Nested(Info("nested"), [Info("first", Level.LOW), Info("second", tags = ["x", "y"])])
+class AnnotatedMembers<@TypeInfo("T") T> {
+    @Info("field", tags = ["field"], numbers = [4, 5])
+    @JvmField
+    var field: @TypeInfo("String") String = ""
+
+    @Info("property", Level.LOW, type = Int::class)
+    @Nested(Info("property"))
+    val property: Map<@TypeInfo("Key", Level.HIGH, [Int::class, Long::class]) String, List<@TypeInfo("Value") T>> = emptyMap()
+
+    @Info("function", Level.HIGH, ["f", "g"], [6, 7, 8], Long::class, 3u, 4uL)
+    @Nested(Info("function"), [Info("other", Level.HIGH)])
+    fun function(
+        @Info("first") first: @TypeInfo("Int") Int,
+        @Info("second", Level.LOW) second: List<@TypeInfo("Element", types = [String::class]) String>,
+    ): @TypeInfo("Result") Map<String, @TypeInfo("Values") List<T>> = TODO()
+
+    @Info("deprecated")
+    @Deprecated("Use function instead", ReplaceWith("function(first, second)"))
+    fun deprecated(first: Int, second: String): Unit = TODO()
+}
@@ -0,0 +1,68 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.example.declarations
+
+// A mix of the common declarations, for end-to-end printing.
+
+sealed class Result<out T> {
+    data class Success<T>(val value: T, val timestamp: Long) : Result<T>()
+    data class Failure(val error: Throwable, val retries: Int = 0) : Result<Nothing>()
+    object Loading : Result<Nothing>()
+}
+
+enum class Color(val rgb: Int) {
+    RED(0xFF0000), GREEN(0x00FF00), BLUE(0x0000FF);
+
+    fun hex(): String = TODO()
+}
+
+@JvmInline
+value class UserId(val value: Long)
+
+data class User(val id: UserId, var name: String, val email: String?, val roles: Set<String> = emptySet())
+
+interface Service {
+    suspend fun load(id: UserId): Result<User>
+    fun observe(listener: (Result<User>) -> Unit)
+
+    companion object {
+        const val TIMEOUT = 1000L
+        fun create(): Service = TODO()
+    }
+}
+
+open class BaseViewModel(protected val service: Service) {
+    private val cache = mutableMapOf<UserId, User>()
+    lateinit var current: User
+    open val title: String get() = "Base"
+
+    inline fun <reified T> cast(value: Any): T? = value as? T
+
+    internal fun clear() = cache.clear()
+
+    inner class Listener(val tag: String) {
+        fun onResult(result: Result<User>) = Unit
+    }
+}
+
+class UserViewModel(service: Service) : BaseViewModel(service) {
+    override val title: String = "Users"
+    val selection: List<User> by lazy { emptyList<User>() }
+
+    fun users(filter: (User) -> Boolean = { true }): List<User> = listOf<User>().filter(filter).sortedBy { it.name }
+
+    infix fun User.sameAs(other: User): Boolean = id == other.id
+
+    operator fun get(id: UserId): User? = null
+}
+
+fun <T> Result<T>.valueOrNull(): T? = (this as? Result.Success<T>)?.value
+
+tailrec fun gcd(a: Long, b: Long): Long = if (b == 0L) a else gcd(b, a % b)
+
+val Result<*>.isDone: Boolean get() = this !is Result.Loading
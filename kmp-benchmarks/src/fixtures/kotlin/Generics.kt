@@ -0,0 +1,40 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.example.generics
+
+// Deeply nested generic types, with variance, nullability and function types.
+
+typealias Nested<T> = Map<String, List<Map<T, Set<List<T?>>>>>
+
+fun nestedMaps(a: Map<String, List<Map<Int, Set<String?>>>>, b: Nested<Long>): Map<String, List<Map<Int, Set<Nested<String>>>>> = TODO()
+
+fun variance(a: List<out Comparable<in Number>>, b: MutableMap<in String, out List<*>>): Comparable<in List<out Map<*, *>>> = TODO()
+
+fun functions(
+    a: (Int, String) -> List<Pair<Int, Long>>,
+    b: Int.(Long) -> Map<String, (Int) -> Unit>,
+    c: (() -> Unit)?,
+    d: suspend (List<Set<Map<String, Int>>>) -> Unit,
+): suspend () -> ((Int) -> (Long) -> List<String>) = TODO()
+
+fun <T : Comparable<T>, R : List<T>, S> bounded(a: Map<T, List<R>>, b: Array<out T>, c: S): Pair<Map<T, R>, List<S>> where S : CharSequence, S : Comparable<S> = TODO()
+
+interface Repository<K : Comparable<K>, V : Any> {
+    fun find(key: K): V?
+    fun findAll(keys: Collection<K>): Map<K, List<V>>
+    fun <R> transform(key: K, transformation: (V) -> Map<K, Set<R>>): Map<K, Set<R>>
+}
+
+class Cache<K : Comparable<K>, V : Any>(
+    val delegate: Repository<K, V>,
+    val entries: MutableMap<K, Pair<Long, List<V>>>,
+) : Repository<K, V> by delegate {
+    val listeners: MutableList<(K, V?, List<Map<K, V>>) -> Unit> = mutableListOf()
+
+    fun <R : Comparable<R>> sorted(selector: (V) -> R): List<Pair<K, List<V>>> = TODO()
+}
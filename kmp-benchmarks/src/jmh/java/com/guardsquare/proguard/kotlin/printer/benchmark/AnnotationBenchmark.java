@@ -0,0 +1,77 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark;
+
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinter;
+import com.guardsquare.proguard.kotlin.printer.internal.AnnotationPrinter;
+import com.guardsquare.proguard.kotlin.printer.internal.KotlinAnnotationPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.attribute.visitor.AllAttributeVisitor;
+import proguard.classfile.attribute.visitor.AttributeVisitor;
+import proguard.classfile.kotlin.visitor.AllKotlinAnnotationVisitor;
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor;
+import proguard.classfile.visitor.MemberVisitor;
+
+/**
+ * Benchmarks {@link AnnotationPrinter} on the Java annotations and
+ * {@link KotlinAnnotationPrinter} on the Kotlin annotations of a class with
+ * annotation-heavy members.
+ *
+ * @author James Hamilton
+ */
+@State(Scope.Thread)
+public class AnnotationBenchmark
+{
+    private Clazz                      clazz;
+    private KotlinMetadataPrinter      printer;
+    private AttributeVisitor           classAnnotationPrinter;
+    private MemberVisitor              memberAnnotationPrinter;
+    private AllKotlinAnnotationVisitor kotlinAnnotationPrinter;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        ClassPool programClassPool = Fixtures.programClassPool();
+
+        clazz   = Fixtures.getClass(programClassPool, "com/example/annotations/AnnotatedMembers");
+        printer = new KotlinMetadataPrinter(programClassPool);
+
+        // Print the class once, so the printer has set up its context.
+        clazz.accept(new ReferencedKotlinMetadataVisitor(printer));
+
+        classAnnotationPrinter  = new AnnotationPrinter(printer);
+        memberAnnotationPrinter = new AllAttributeVisitor(new AnnotationPrinter(printer));
+        kotlinAnnotationPrinter = new AllKotlinAnnotationVisitor(new KotlinAnnotationPrinter(printer));
+    }
+
+
+    @Benchmark
+    public String javaAnnotations()
+    {
+        printer.pushStringBuilder();
+        clazz.attributesAccept(classAnnotationPrinter);
+        clazz.fieldsAccept(memberAnnotationPrinter);
+        clazz.methodsAccept(memberAnnotationPrinter);
+        return printer.popStringBuilder();
+    }
+
+
+    @Benchmark
+    public String kotlinAnnotations()
+    {
+        printer.pushStringBuilder();
+        clazz.kotlinMetadataAccept(kotlinAnnotationPrinter);
+        return printer.popStringBuilder();
+    }
+}
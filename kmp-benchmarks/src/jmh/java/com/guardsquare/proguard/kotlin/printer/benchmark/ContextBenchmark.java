@@ -0,0 +1,82 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark;
+
+import com.guardsquare.proguard.kotlin.printer.internal.Context;
+import com.guardsquare.proguard.kotlin.printer.internal.ContextFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+
+/**
+ * Benchmarks the resolution of class names by {@link Context#className}, with
+ * a mix of default imports, names in the current package, inner classes, and
+ * other names, both without any context frames and with the names cached in
+ * a frame.
+ *
+ * @author James Hamilton
+ */
+@State(Scope.Thread)
+public class ContextBenchmark
+{
+    private static final String[] CLASS_NAMES = new String[]
+    {
+        "kotlin/String",
+        "kotlin/Any",
+        "kotlin/collections/List",
+        "kotlin/collections/Map$Entry",
+        "kotlin/jvm/functions/Function2",
+        "kotlin/ranges/IntRange",
+        "java/util/concurrent/ConcurrentHashMap",
+        "com/example/declarations/Result",
+        "com/example/declarations/Result$Success",
+        "com/example/declarations/BaseViewModel$Listener",
+        "com/example/generics/Cache",
+        "com/example/annotations/Info",
+    };
+
+    private Context emptyContext;
+    private Context context;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        ClassPool programClassPool = Fixtures.programClassPool();
+        Clazz     clazz            = Fixtures.getClass(programClassPool, "com/example/declarations/User");
+
+        emptyContext = new Context();
+        context      = new Context();
+        clazz.kotlinMetadataAccept((kotlinClazz, kotlinMetadata) ->
+            context.push(new ContextFrame(kotlinClazz, kotlinMetadata)));
+    }
+
+
+    @Benchmark
+    public void className(Blackhole blackhole)
+    {
+        for (String className : CLASS_NAMES)
+        {
+            blackhole.consume(emptyContext.className(className, "."));
+        }
+    }
+
+
+    @Benchmark
+    public void cachedClassName(Blackhole blackhole)
+    {
+        for (String className : CLASS_NAMES)
+        {
+            blackhole.consume(context.className(className, "."));
+        }
+    }
+}
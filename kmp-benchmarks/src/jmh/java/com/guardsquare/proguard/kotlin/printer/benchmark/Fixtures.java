@@ -0,0 +1,78 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark;
+
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinterCli;
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.visitor.ClassPoolFiller;
+import proguard.io.ClassReader;
+import proguard.io.JarReader;
+import proguard.io.NameFilteredDataEntryReader;
+import proguard.io.StreamingDataEntry;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Provides the fixtures of the benchmarks: classes that were compiled once,
+ * from the Kotlin sources in src/fixtures, and packaged in a jar with the
+ * benchmarks, so the benchmarks are repeatable and run offline.
+ *
+ * @author James Hamilton
+ */
+public class Fixtures
+{
+    private static final String FIXTURES_JAR = "kmp-benchmark-fixtures.jar";
+
+
+    private Fixtures() {}
+
+
+    /**
+     * Returns a new class pool with the fixture classes, with their Kotlin
+     * metadata and references initialized, ready to be printed.
+     */
+    public static ClassPool programClassPool() throws IOException
+    {
+        ClassPool programClassPool = new ClassPool();
+
+        try (InputStream inputStream = Fixtures.class.getClassLoader().getResourceAsStream(FIXTURES_JAR))
+        {
+            if (inputStream == null)
+            {
+                throw new IOException("Can't find the benchmark fixtures [" + FIXTURES_JAR + "]");
+            }
+
+            new JarReader(
+            new NameFilteredDataEntryReader("**.class",
+            new ClassReader(false, false, false, false, null,
+            new ClassPoolFiller(programClassPool))))
+                .read(new StreamingDataEntry(FIXTURES_JAR, inputStream));
+        }
+
+        KotlinMetadataPrinterCli.initialize(programClassPool);
+
+        return programClassPool;
+    }
+
+
+    /**
+     * Returns the fixture class with the given name from the given class pool.
+     */
+    public static Clazz getClass(ClassPool programClassPool, String className)
+    {
+        Clazz clazz = programClassPool.getClass(className);
+        if (clazz == null)
+        {
+            throw new IllegalArgumentException("Can't find fixture class [" + className + "]");
+        }
+
+        return clazz;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark;
+
+import com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.kotlin.KotlinClassKindMetadata;
+import proguard.classfile.kotlin.KotlinMetadata;
+import proguard.classfile.kotlin.flags.KotlinClassFlags;
+import proguard.classfile.kotlin.flags.KotlinFunctionFlags;
+import proguard.classfile.kotlin.flags.KotlinPropertyFlags;
+import proguard.classfile.kotlin.flags.KotlinValueParameterFlags;
+import proguard.classfile.kotlin.visitor.AllFunctionVisitor;
+import proguard.classfile.kotlin.visitor.AllPropertyVisitor;
+import proguard.classfile.kotlin.visitor.KotlinMetadataVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmarks the {@link FlagPrinter} helpers on the flags of all classes,
+ * functions, properties and value parameters of the fixtures.
+ *
+ * @author James Hamilton
+ */
+@State(Scope.Thread)
+public class FlagBenchmark
+{
+    private KotlinClassFlags[]          classFlags;
+    private KotlinFunctionFlags[]       functionFlags;
+    private KotlinPropertyFlags[]       propertyFlags;
+    private KotlinValueParameterFlags[] valueParameterFlags;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        ClassPool programClassPool = Fixtures.programClassPool();
+
+        List<KotlinClassFlags>          classFlagList          = new ArrayList<>();
+        List<KotlinFunctionFlags>       functionFlagList       = new ArrayList<>();
+        List<KotlinPropertyFlags>       propertyFlagList       = new ArrayList<>();
+        List<KotlinValueParameterFlags> valueParameterFlagList = new ArrayList<>();
+
+        programClassPool.classesAccept(clazz -> clazz.kotlinMetadataAccept(new KotlinMetadataVisitor()
+        {
+            @Override
+            public void visitAnyKotlinMetadata(Clazz clazz, KotlinMetadata kotlinMetadata) { }
+
+
+            @Override
+            public void visitKotlinClassMetadata(Clazz clazz, KotlinClassKindMetadata kotlinClassKindMetadata)
+            {
+                classFlagList.add(kotlinClassKindMetadata.flags);
+            }
+        }));
+
+        programClassPool.classesAccept(clazz -> clazz.kotlinMetadataAccept(
+            new AllFunctionVisitor(
+                (functionClazz, kotlinMetadata, kotlinFunctionMetadata) -> {
+                    functionFlagList.add(kotlinFunctionMetadata.flags);
+                    kotlinFunctionMetadata.valueParametersAccept(functionClazz, kotlinMetadata,
+                        (parameterClazz, kotlinValueParameterMetadata) -> valueParameterFlagList.add(kotlinValueParameterMetadata.flags));
+                })));
+
+        programClassPool.classesAccept(clazz -> clazz.kotlinMetadataAccept(
+            new AllPropertyVisitor(
+                (propertyClazz, kotlinDeclarationContainerMetadata, kotlinPropertyMetadata) ->
+                    propertyFlagList.add(kotlinPropertyMetadata.flags))));
+
+        classFlags          = classFlagList.toArray(new KotlinClassFlags[0]);
+        functionFlags       = functionFlagList.toArray(new KotlinFunctionFlags[0]);
+        propertyFlags       = propertyFlagList.toArray(new KotlinPropertyFlags[0]);
+        valueParameterFlags = valueParameterFlagList.toArray(new KotlinValueParameterFlags[0]);
+    }
+
+
+    @Benchmark
+    public void classFlags(Blackhole blackhole)
+    {
+        for (KotlinClassFlags flags : classFlags)
+        {
+            blackhole.consume(FlagPrinter.classFlags(flags));
+        }
+    }
+
+
+    @Benchmark
+    public void functionFlags(Blackhole blackhole)
+    {
+        for (KotlinFunctionFlags flags : functionFlags)
+        {
+            blackhole.consume(FlagPrinter.functionFlags(flags));
+        }
+    }
+
+
+    @Benchmark
+    public void propertyFlags(Blackhole blackhole)
+    {
+        for (KotlinPropertyFlags flags : propertyFlags)
+        {
+            blackhole.consume(FlagPrinter.propertyFlags(flags));
+        }
+    }
+
+
+    @Benchmark
+    public void valueParameterFlags(Blackhole blackhole)
+    {
+        for (KotlinValueParameterFlags flags : valueParameterFlags)
+        {
+            blackhole.consume(FlagPrinter.valueParameterFlags(flags));
+        }
+    }
+}
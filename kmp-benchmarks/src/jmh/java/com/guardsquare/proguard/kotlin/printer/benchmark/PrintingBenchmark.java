@@ -0,0 +1,52 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark;
+
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import proguard.classfile.ClassPool;
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor;
+import proguard.classfile.visitor.ClassCounter;
+import proguard.classfile.visitor.ClassVisitor;
+import proguard.classfile.visitor.MultiClassVisitor;
+
+/**
+ * Benchmarks printing all classes of a prebuilt class pool, end to end,
+ * without reading or initializing the classes.
+ *
+ * @author James Hamilton
+ */
+@State(Scope.Thread)
+public class PrintingBenchmark
+{
+    private ClassPool    programClassPool;
+    private ClassCounter classCounter;
+    private ClassVisitor printer;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        programClassPool = Fixtures.programClassPool();
+        classCounter     = new ClassCounter();
+        printer          = new MultiClassVisitor(
+                               classCounter,
+                               new ReferencedKotlinMetadataVisitor(new KotlinMetadataPrinter(programClassPool)));
+    }
+
+
+    @Benchmark
+    public int printClassPool()
+    {
+        programClassPool.classesAccept(printer);
+        return classCounter.getCount();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.benchmark;
+
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor;
+import proguard.classfile.visitor.ClassVisitor;
+
+/**
+ * Benchmarks the printing of deeply generic types, with variance,
+ * nullability, function types and type aliases, which all go through
+ * {@link KotlinMetadataPrinter}'s type visitor.
+ *
+ * @author James Hamilton
+ */
+@State(Scope.Thread)
+public class TypeBenchmark
+{
+    private Clazz        genericsFacade;
+    private Clazz        cacheClass;
+    private ClassVisitor printer;
+
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        ClassPool programClassPool = Fixtures.programClassPool();
+
+        genericsFacade = Fixtures.getClass(programClassPool, "com/example/generics/GenericsKt");
+        cacheClass     = Fixtures.getClass(programClassPool, "com/example/generics/Cache");
+        printer        = new ReferencedKotlinMetadataVisitor(new KotlinMetadataPrinter(programClassPool));
+    }
+
+
+    @Benchmark
+    public Object deeplyGenericFunctions()
+    {
+        genericsFacade.accept(printer);
+        return genericsFacade.getProcessingInfo();
+    }
+
+
+    @Benchmark
+    public Object genericClass()
+    {
+        cacheClass.accept(printer);
+        return cacheClass.getProcessingInfo();
+    }
+}
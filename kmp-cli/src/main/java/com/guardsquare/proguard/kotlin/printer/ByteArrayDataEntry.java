@@ -0,0 +1,185 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.io.DataEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * This {@link DataEntry} represents bytes that have already been read into
+ * memory, so they can be read again, or read in another thread.
+ *
+ * @author James Hamilton
+ */
+public class ByteArrayDataEntry
+implements   DataEntry
+{
+    private final DataEntry parent;
+    private final String    name;
+    private final String    originalName;
+    private final byte[]    bytes;
+
+
+    /**
+     * Creates a new ByteArrayDataEntry with the given bytes of another data
+     * entry.
+     */
+    public ByteArrayDataEntry(DataEntry dataEntry, byte[] bytes)
+    {
+        this(dataEntry.getParent(), dataEntry.getName(), dataEntry.getOriginalName(), bytes);
+    }
+
+
+    /**
+     * Creates a new ByteArrayDataEntry with the given name and bytes.
+     */
+    public ByteArrayDataEntry(DataEntry parent, String name, byte[] bytes)
+    {
+        this(parent, name, name, bytes);
+    }
+
+
+    private ByteArrayDataEntry(DataEntry parent, String name, String originalName, byte[] bytes)
+    {
+        this.parent       = parent;
+        this.name         = name;
+        this.originalName = originalName;
+        this.bytes        = bytes;
+    }
+
+
+    /**
+     * Reads the contents of the given data entry into a new data entry,
+     * unless they are already in memory.
+     */
+    public static ByteArrayDataEntry read(DataEntry dataEntry) throws IOException
+    {
+        if (dataEntry instanceof ByteArrayDataEntry)
+        {
+            return (ByteArrayDataEntry)dataEntry;
+        }
+
+        try
+        {
+            return new ByteArrayDataEntry(dataEntry, readBytes(dataEntry.getInputStream(), dataEntry.getSize()));
+        }
+        finally
+        {
+            dataEntry.closeInputStream();
+        }
+    }
+
+
+    /**
+     * Reads all remaining bytes from the given input stream.
+     * @param inputStream the input stream, which is not closed.
+     * @param size        the expected number of bytes, or -1 if unknown.
+     */
+    public static byte[] readBytes(InputStream inputStream, long size) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int)size : 8192);
+        byte[]                buffer       = new byte[8192];
+
+        int count;
+        while ((count = inputStream.read(buffer)) >= 0)
+        {
+            outputStream.write(buffer, 0, count);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+
+    /**
+     * Returns a data entry with the same bytes under the given name, which
+     * keeps the original name of this data entry.
+     */
+    public ByteArrayDataEntry withName(String name)
+    {
+        return new ByteArrayDataEntry(parent, name, originalName, bytes);
+    }
+
+
+    /**
+     * Returns the bytes of this data entry.
+     */
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+
+
+    // Implementations for DataEntry.
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+
+    @Override
+    public String getOriginalName()
+    {
+        return originalName;
+    }
+
+
+    @Override
+    public long getSize()
+    {
+        return bytes.length;
+    }
+
+
+    @Override
+    public boolean isDirectory()
+    {
+        return false;
+    }
+
+
+    @Override
+    public InputStream getInputStream()
+    {
+        return new ByteArrayInputStream(bytes);
+    }
+
+
+    @Override
+    public void closeInputStream() { }
+
+
+    @Override
+    public DataEntry getParent()
+    {
+        return parent;
+    }
+
+
+    @Override
+    public String toString()
+    {
+        return parent == null ? name : parent.toString() + ':' + name;
+    }
+}
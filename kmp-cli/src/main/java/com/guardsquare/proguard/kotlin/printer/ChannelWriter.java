@@ -0,0 +1,357 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This {@link Writer} encodes the characters that it writes as UTF-8, into
+ * a large reusable byte buffer, and writes the full buffers to the given
+ * channel, e.g. the channel of a file or of stdout.
+ * <p>
+ * Optionally, a background thread writes the full buffers, while the
+ * characters are encoded into a second buffer, so encoding and writing
+ * overlap.
+ * <p>
+ * Like other writers, this writer isn't thread-safe by itself.
+ *
+ * @author James Hamilton
+ */
+public class ChannelWriter
+extends      Writer
+{
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+    private static final int BYTE_BUFFER_SIZE = 256 * 1024;
+
+    private final WritableByteChannel channel;
+    private final boolean             closeChannel;
+    private final CharsetEncoder      encoder    = StandardCharsets.UTF_8.newEncoder()
+                                                                         .onMalformedInput(CodingErrorAction.REPLACE)
+                                                                         .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer          charBuffer = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+    private       ByteBuffer          byteBuffer = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+
+    // The background writer, with the buffer that it is writing, if any.
+    private final ExecutorService     backgroundWriter;
+    private       ByteBuffer          spareByteBuffer;
+    private       Future<?>           pendingWrite;
+
+    private volatile long             byteCount;
+    private       boolean             closed;
+
+
+    /**
+     * Creates a new ChannelWriter.
+     * @param channel      the channel to write to.
+     * @param closeChannel whether to close the channel when this writer is
+     *                     closed, e.g. not for stdout.
+     * @param asynchronous whether to write the full buffers in a background
+     *                     thread.
+     */
+    public ChannelWriter(WritableByteChannel channel,
+                         boolean             closeChannel,
+                         boolean             asynchronous)
+    {
+        this.channel      = channel;
+        this.closeChannel = closeChannel;
+
+        if (asynchronous)
+        {
+            this.spareByteBuffer  = ByteBuffer.allocate(BYTE_BUFFER_SIZE);
+            this.backgroundWriter = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "output-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        else
+        {
+            this.backgroundWriter = null;
+        }
+    }
+
+
+    /**
+     * Returns the number of bytes written to the channel so far.
+     */
+    public long getByteCount()
+    {
+        return byteCount;
+    }
+
+
+    // Implementations for Writer.
+
+    @Override
+    public void write(int c) throws IOException
+    {
+        if (!charBuffer.hasRemaining())
+        {
+            encode(false);
+        }
+        charBuffer.put((char)c);
+    }
+
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException
+    {
+        while (length > 0)
+        {
+            if (!charBuffer.hasRemaining())
+            {
+                encode(false);
+            }
+
+            int count = Math.min(length, charBuffer.remaining());
+            charBuffer.put(chars, offset, count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException
+    {
+        while (length > 0)
+        {
+            if (!charBuffer.hasRemaining())
+            {
+                encode(false);
+            }
+
+            int count = Math.min(length, charBuffer.remaining());
+            charBuffer.put(string, offset, offset + count);
+            offset += count;
+            length -= count;
+        }
+    }
+
+
+    @Override
+    public void flush() throws IOException
+    {
+        checkOpen();
+
+        encode(false);
+        drain();
+        awaitPendingWrite();
+    }
+
+
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        try
+        {
+            encode(true);
+            while (encoder.flush(byteBuffer).isOverflow())
+            {
+                drain();
+            }
+            drain();
+            awaitPendingWrite();
+        }
+        finally
+        {
+            closed = true;
+
+            if (backgroundWriter != null)
+            {
+                backgroundWriter.shutdown();
+            }
+
+            if (closeChannel)
+            {
+                channel.close();
+            }
+        }
+    }
+
+
+    /**
+     * Closes this writer without writing the characters that it still
+     * buffers, e.g. after a failure, but still stops its background thread
+     * and closes the channel, if requested. Does nothing if the writer has
+     * already been closed.
+     */
+    public void abort() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+
+        closed = true;
+        try
+        {
+            awaitPendingWrite();
+        }
+        catch (IOException ignored)
+        {
+            // The output is abandoned anyway.
+        }
+        finally
+        {
+            if (backgroundWriter != null)
+            {
+                backgroundWriter.shutdown();
+            }
+
+            if (closeChannel)
+            {
+                channel.close();
+            }
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Encodes the characters in the char buffer into the byte buffer,
+     * draining the byte buffer whenever it is full. Incomplete surrogate
+     * pairs are left in the char buffer, unless this is the end of the input.
+     */
+    private void encode(boolean endOfInput) throws IOException
+    {
+        checkOpen();
+
+        charBuffer.flip();
+        while (true)
+        {
+            CoderResult result = encoder.encode(charBuffer, byteBuffer, endOfInput);
+            if (result.isOverflow())
+            {
+                drain();
+            }
+            else if (result.isUnderflow())
+            {
+                break;
+            }
+            else
+            {
+                result.throwException();
+            }
+        }
+        charBuffer.compact();
+    }
+
+
+    /**
+     * Writes the bytes in the byte buffer to the channel, directly or in the
+     * background, and clears the byte buffer.
+     */
+    private void drain() throws IOException
+    {
+        if (byteBuffer.position() == 0)
+        {
+            return;
+        }
+
+        byteBuffer.flip();
+        byteCount += byteBuffer.remaining();
+
+        if (backgroundWriter == null)
+        {
+            writeFully(byteBuffer);
+            byteBuffer.clear();
+        }
+        else
+        {
+            // Wait until the spare buffer has been written, then swap the
+            // buffers and write the full one in the background.
+            awaitPendingWrite();
+
+            ByteBuffer fullByteBuffer = byteBuffer;
+            byteBuffer      = spareByteBuffer;
+            spareByteBuffer = fullByteBuffer;
+
+            pendingWrite = backgroundWriter.submit(() -> {
+                writeFully(fullByteBuffer);
+                fullByteBuffer.clear();
+                return null;
+            });
+        }
+    }
+
+
+    private void awaitPendingWrite() throws IOException
+    {
+        if (pendingWrite != null)
+        {
+            try
+            {
+                pendingWrite.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing output", e);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable cause = e.getCause();
+                throw cause instanceof IOException ?
+                    (IOException)cause :
+                    new IOException("Can't write output (" + cause.getMessage() + ")", cause);
+            }
+            finally
+            {
+                pendingWrite = null;
+            }
+        }
+    }
+
+
+    private void writeFully(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+
+    private void checkOpen() throws IOException
+    {
+        if (closed)
+        {
+            throw new IOException("Writer closed");
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility methods to scan the constant pools of class files, without
+ * parsing the classes. Scanning is much cheaper than parsing, so the
+ * readers can skip classes early.
+ *
+ * @author James Hamilton
+ */
+public class ClassFileScanner
+{
+    // The constant pool count follows the magic number and the version.
+    private static final int CONSTANT_POOL_COUNT_OFFSET = 8;
+
+
+    /**
+     * Returns whether the constant pool of the given class file contains the
+     * given Utf8 constant. Class files that can't be scanned are assumed to
+     * contain it, so their reader can report them.
+     */
+    public static boolean containsUtf8(byte[] bytes, byte[] utf8)
+    {
+        try
+        {
+            int constantPoolCount = u2(bytes, CONSTANT_POOL_COUNT_OFFSET);
+            int offset            = CONSTANT_POOL_COUNT_OFFSET + 2;
+
+            for (int index = 1; index < constantPoolCount; index++)
+            {
+                int tag = bytes[offset];
+                if (tag == 1 && equals(bytes, offset + 3, u2(bytes, offset + 1), utf8))
+                {
+                    return true;
+                }
+
+                int length = constantLength(bytes, offset);
+                if (length < 0)
+                {
+                    return true;
+                }
+                offset += length;
+
+                // Long and double constants take up two entries.
+                if (tag == 5 || tag == 6)
+                {
+                    index++;
+                }
+            }
+
+            return false;
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            return true;
+        }
+    }
+
+
+    /**
+     * Returns the internal name of the class in the given class file, or
+     * null if the class file can't be scanned.
+     */
+    public static String className(byte[] bytes)
+    {
+        try
+        {
+            int   constantPoolCount = u2(bytes, CONSTANT_POOL_COUNT_OFFSET);
+            int[] constantOffsets   = new int[constantPoolCount];
+            int   offset            = CONSTANT_POOL_COUNT_OFFSET + 2;
+
+            for (int index = 1; index < constantPoolCount; index++)
+            {
+                constantOffsets[index] = offset;
+
+                int tag    = bytes[offset];
+                int length = constantLength(bytes, offset);
+                if (length < 0)
+                {
+                    return null;
+                }
+                offset += length;
+
+                // Long and double constants take up two entries.
+                if (tag == 5 || tag == 6)
+                {
+                    index++;
+                }
+            }
+
+            // Skip the access flags, to the index of the class constant.
+            int classOffset = constantOffsets[u2(bytes, offset + 2)];
+            if (bytes[classOffset] != 7)
+            {
+                return null;
+            }
+
+            int nameOffset = constantOffsets[u2(bytes, classOffset + 1)];
+            if (bytes[nameOffset] != 1)
+            {
+                return null;
+            }
+
+            // Class names don't contain the characters that modified UTF-8
+            // encodes differently, like null characters.
+            return new String(bytes, nameOffset + 3, u2(bytes, nameOffset + 1), StandardCharsets.UTF_8);
+        }
+        catch (ArrayIndexOutOfBoundsException e)
+        {
+            return null;
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the length of the constant at the given offset, including its
+     * tag, or -1 if the constant is unknown.
+     */
+    private static int constantLength(byte[] bytes, int offset)
+    {
+        switch (bytes[offset])
+        {
+            case 1:  // Utf8.
+                return 3 + u2(bytes, offset + 1);
+            case 3:  // Integer.
+            case 4:  // Float.
+            case 9:  // Field reference.
+            case 10: // Method reference.
+            case 11: // Interface method reference.
+            case 12: // Name and type.
+            case 17: // Dynamic.
+            case 18: // Invoke dynamic.
+                return 5;
+            case 5:  // Long.
+            case 6:  // Double.
+                return 9;
+            case 7:  // Class.
+            case 8:  // String.
+            case 16: // Method type.
+            case 19: // Module.
+            case 20: // Package.
+                return 3;
+            case 15: // Method handle.
+                return 4;
+            default:
+                return -1;
+        }
+    }
+
+
+    private static int u2(byte[] bytes, int offset)
+    {
+        return ((bytes[offset] & 0xff) << 8) | (bytes[offset + 1] & 0xff);
+    }
+
+
+    private static boolean equals(byte[] bytes, int offset, int length, byte[] otherBytes)
+    {
+        if (length != otherBytes.length)
+        {
+            return false;
+        }
+
+        for (int index = 0; index < length; index++)
+        {
+            if (bytes[offset + index] != otherBytes[index])
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.io.DataEntry;
+import proguard.io.DataEntryReader;
+
+import java.io.IOException;
+
+/**
+ * This {@link DataEntryReader} reads class files into memory and passes them
+ * to its delegate under the internal names of their classes, e.g.
+ * "<code>com/example/Foo.class</code>", so they can be filtered by class name
+ * before they are parsed. The entry paths of class files don't always match
+ * their class names, e.g. in multi-release jars or in Spring Boot jars.
+ * Class files that can't be scanned keep their names, so their reader can
+ * report them.
+ *
+ * @author James Hamilton
+ */
+public class ClassNameDataEntryReader
+implements   DataEntryReader
+{
+    private final DataEntryReader dataEntryReader;
+
+
+    /**
+     * Creates a new ClassNameDataEntryReader.
+     * @param dataEntryReader the reader for the renamed class files.
+     */
+    public ClassNameDataEntryReader(DataEntryReader dataEntryReader)
+    {
+        this.dataEntryReader = dataEntryReader;
+    }
+
+
+    // Implementations for DataEntryReader.
+
+    @Override
+    public void read(DataEntry dataEntry) throws IOException
+    {
+        ByteArrayDataEntry byteArrayDataEntry = ByteArrayDataEntry.read(dataEntry);
+
+        String className = ClassFileScanner.className(byteArrayDataEntry.getBytes());
+
+        dataEntryReader.read(className == null ?
+                                 byteArrayDataEntry :
+                                 byteArrayDataEntry.withName(className + ".class"));
+    }
+}
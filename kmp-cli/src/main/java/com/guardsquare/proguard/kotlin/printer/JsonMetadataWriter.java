@@ -0,0 +1,236 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.text.WordUtils;
+import org.json.JSONObject;
+import proguard.classfile.Clazz;
+import proguard.classfile.kotlin.KotlinConstants;
+import proguard.classfile.kotlin.KotlinDeclarationContainerMetadata;
+import proguard.classfile.kotlin.KotlinFunctionMetadata;
+import proguard.classfile.kotlin.KotlinMetadata;
+import proguard.classfile.kotlin.KotlinSyntheticClassKindMetadata;
+import proguard.classfile.kotlin.visitor.AllFunctionVisitor;
+import proguard.classfile.kotlin.visitor.KotlinFunctionVisitor;
+import proguard.classfile.kotlin.visitor.KotlinMetadataVisitor;
+import proguard.classfile.util.ClassUtil;
+import proguard.classfile.visitor.ClassVisitor;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+
+/**
+ * This {@link ClassVisitor} writes the JSON output for the classes that it
+ * visits, in a single visit per class. It writes the metadata descriptor with
+ * the printed Kotlin metadata from the processing info of each class as soon
+ * as it visits the class, and then clears the processing info, so the output
+ * is never held in memory as a whole. It collects the Kotlin metadata and
+ * function statistics along the way, and writes them in a trailing section.
+ * <p>
+ * In JSON Lines mode, it writes a self-contained JSON record on a separate
+ * line for each class instead, followed by a final statistics record.
+ *
+ * @author James Hamilton
+ */
+public class JsonMetadataWriter
+implements   ClassVisitor,
+             KotlinMetadataVisitor,
+             KotlinFunctionVisitor
+{
+    private static final int INDENT_FACTOR = 3;
+
+    private final PrintWriter printWriter;
+    private final String      inputName;
+    private final boolean     jsonLines;
+    private final JSONObject  kotlinMetadataStatistics = new JSONObject();
+    private final JSONObject  kotlinFunctionStatistics = new JSONObject();
+
+    private final KotlinMetadataVisitor allFunctionVisitor = new AllFunctionVisitor(this);
+
+    private boolean firstMetadata = true;
+
+
+    /**
+     * Creates a new JsonMetadataWriter and writes the start of the JSON
+     * output.
+     * @param printWriter the writer for the JSON output.
+     * @param inputName   the name of the input.
+     */
+    public JsonMetadataWriter(PrintWriter printWriter, String inputName)
+    {
+        this(printWriter, inputName, false);
+    }
+
+
+    /**
+     * Creates a new JsonMetadataWriter and writes the start of the JSON
+     * output.
+     * @param printWriter the writer for the JSON output.
+     * @param inputName   the name of the input.
+     * @param jsonLines   whether to write JSON Lines, with a JSON record per
+     *                    line, instead of a single JSON object.
+     */
+    public JsonMetadataWriter(PrintWriter printWriter, String inputName, boolean jsonLines)
+    {
+        this.printWriter = printWriter;
+        this.inputName   = inputName;
+        this.jsonLines   = jsonLines;
+
+        kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_CLASS),                   0);
+        kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_FILE_FACADE),             0);
+        kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_SYNTHETIC_CLASS),         0);
+        kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_MULTI_FILE_CLASS_FACADE), 0);
+        kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_MULTI_FILE_CLASS_PART),   0);
+        kotlinFunctionStatistics.put("normal",    0);
+        kotlinFunctionStatistics.put("synthetic", 0);
+
+        if (jsonLines)
+        {
+            return;
+        }
+
+        printWriter.println("{");
+        printWriter.println(indent(1) + JSONObject.quote("input") + ": " + JSONObject.quote(inputName) + ",");
+        printWriter.print(indent(1) + JSONObject.quote("metadata") + ": {");
+    }
+
+
+    /**
+     * Writes the statistics and the end of the JSON output.
+     * @param classCount the number of Java classes.
+     */
+    public void finish(int classCount)
+    {
+        JSONObject statistics       = new JSONObject();
+        JSONObject javaStatistics   = new JSONObject();
+        JSONObject kotlinStatistics = new JSONObject();
+
+        statistics.put("java",   javaStatistics.put("classes", classCount));
+        statistics.put("kotlin", kotlinStatistics.put("metadata", kotlinMetadataStatistics).put("functions", kotlinFunctionStatistics));
+
+        if (jsonLines)
+        {
+            JSONObject record = new JSONObject();
+            record.put("input",      inputName);
+            record.put("statistics", statistics);
+            printWriter.println(record.toString());
+            return;
+        }
+
+        if (!firstMetadata)
+        {
+            printWriter.println();
+            printWriter.print(indent(1));
+        }
+        printWriter.println("},");
+        printWriter.print(indent(1) + JSONObject.quote("statistics") + ": ");
+        statistics.write(printWriter, INDENT_FACTOR, INDENT_FACTOR);
+        printWriter.println();
+        printWriter.println("}");
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz)
+    {
+        clazz.kotlinMetadataAccept(this);
+    }
+
+
+    // Implementations for KotlinMetadataVisitor.
+
+    @Override
+    public void visitAnyKotlinMetadata(Clazz clazz, KotlinMetadata kotlinMetadata)
+    {
+        Object printed = clazz.getProcessingInfo();
+        if (printed != null)
+        {
+            String className = ClassUtil.externalClassName(clazz.getName());
+
+            JSONObject metadata = new JSONObject();
+            metadata.put("package",    ClassUtil.externalClassName(ClassUtil.internalPackageName(clazz.getName())));
+            metadata.put("name",       ClassUtil.externalShortClassName(ClassUtil.internalShortClassName(clazz.getName())));
+            metadata.put("kind",       metadataKindToString(kotlinMetadata.k));
+            metadata.put("printed",    printed);
+            metadata.put("intrinsics", Collections.EMPTY_MAP); // TODO(#1929)
+
+            if (jsonLines)
+            {
+                metadata.put("class", className);
+                metadata.put("input", inputName);
+                printWriter.println(metadata.toString());
+            }
+            else
+            {
+                printWriter.println(firstMetadata ? "" : ",");
+                printWriter.print(indent(2) + JSONObject.quote(className) + ": ");
+                metadata.write(printWriter, INDENT_FACTOR, 2 * INDENT_FACTOR);
+                firstMetadata = false;
+            }
+
+            clazz.setProcessingInfo(null);
+        }
+
+        kotlinMetadataStatistics.increment(metadataKindToString(kotlinMetadata.k));
+        kotlinMetadata.accept(clazz, allFunctionVisitor);
+    }
+
+
+    // Implementations for KotlinFunctionVisitor.
+
+    @Override
+    public void visitAnyFunction(Clazz clazz, KotlinMetadata kotlinMetadata, KotlinFunctionMetadata kotlinFunctionMetadata) { }
+
+
+    @Override
+    public void visitFunction(Clazz clazz, KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata, KotlinFunctionMetadata kotlinFunctionMetadata)
+    {
+        kotlinFunctionStatistics.increment("normal");
+    }
+
+
+    @Override
+    public void visitSyntheticFunction(Clazz clazz, KotlinSyntheticClassKindMetadata kotlinSyntheticClassKindMetadata, KotlinFunctionMetadata kotlinFunctionMetadata)
+    {
+        kotlinFunctionStatistics.increment("synthetic");
+    }
+
+
+    // Small utility methods.
+
+    private static String indent(int level)
+    {
+        return StringUtils.repeat(' ', level * INDENT_FACTOR);
+    }
+
+
+    /**
+     * Returns the camel case name of the given Kotlin metadata kind, e.g.
+     * "<code>fileFacade</code>".
+     */
+    public static String metadataKindToString(int k)
+    {
+        String metadataKindString = KotlinConstants.metadataKindToString(k);
+        return metadataKindString.substring(0, 1).toLowerCase() +
+               StringUtils.remove(StringUtils.remove(WordUtils.capitalize(metadataKindString, '-', ' '), '-'), ' ').substring(1);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.classfile.kotlin.KotlinConstants;
+import proguard.io.DataEntry;
+import proguard.io.DataEntryReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This {@link DataEntryReader} reads class files into memory and delegates
+ * them to one of two readers, depending on whether their constant pools
+ * refer to the Kotlin metadata annotation. Scanning the constant pool is much
+ * cheaper than parsing the class, so classes without Kotlin metadata can be
+ * skipped early.
+ *
+ * @author James Hamilton
+ */
+public class KotlinClassDataEntryReader
+implements   DataEntryReader
+{
+    private static final byte[] KOTLIN_METADATA_TYPE = KotlinConstants.TYPE_KOTLIN_METADATA.getBytes(StandardCharsets.UTF_8);
+
+    private final DataEntryReader kotlinClassReader;
+    private final DataEntryReader otherClassReader;
+
+
+    /**
+     * Creates a new KotlinClassDataEntryReader.
+     * @param kotlinClassReader the reader for class files that may contain
+     *                          Kotlin metadata.
+     * @param otherClassReader  the optional reader for all other class files.
+     */
+    public KotlinClassDataEntryReader(DataEntryReader kotlinClassReader,
+                                      DataEntryReader otherClassReader)
+    {
+        this.kotlinClassReader = kotlinClassReader;
+        this.otherClassReader  = otherClassReader;
+    }
+
+
+    // Implementations for DataEntryReader.
+
+    @Override
+    public void read(DataEntry dataEntry) throws IOException
+    {
+        ByteArrayDataEntry byteArrayDataEntry = ByteArrayDataEntry.read(dataEntry);
+
+        // Class files that can't be scanned go to the Kotlin class reader,
+        // so it can report them.
+        DataEntryReader dataEntryReader = ClassFileScanner.containsUtf8(byteArrayDataEntry.getBytes(), KOTLIN_METADATA_TYPE) ?
+            kotlinClassReader :
+            otherClassReader;
+
+        if (dataEntryReader != null)
+        {
+            dataEntryReader.read(byteArrayDataEntry);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.attribute.annotation.Annotation;
+import proguard.classfile.attribute.annotation.visitor.AllAnnotationVisitor;
+import proguard.classfile.attribute.annotation.visitor.AnnotationTypeFilter;
+import proguard.classfile.attribute.annotation.visitor.AnnotationVisitor;
+import proguard.classfile.attribute.visitor.AttributeVisitor;
+import proguard.classfile.kotlin.KotlinConstants;
+import proguard.classfile.visitor.ClassVisitor;
+
+/**
+ * This {@link ClassVisitor} delegates the classes that it visits to one of
+ * two class visitors, depending on whether they have a Kotlin metadata
+ * annotation.
+ *
+ * @author James Hamilton
+ */
+public class KotlinMetadataClassFilter
+implements   ClassVisitor,
+             AnnotationVisitor
+{
+    private final ClassVisitor     acceptedClassVisitor;
+    private final ClassVisitor     rejectedClassVisitor;
+    private final AttributeVisitor kotlinMetadataFinder =
+        new AllAnnotationVisitor(
+        new AnnotationTypeFilter(KotlinConstants.TYPE_KOTLIN_METADATA, this));
+
+    private boolean hasKotlinMetadata;
+
+
+    public KotlinMetadataClassFilter(ClassVisitor acceptedClassVisitor,
+                                     ClassVisitor rejectedClassVisitor)
+    {
+        this.acceptedClassVisitor = acceptedClassVisitor;
+        this.rejectedClassVisitor = rejectedClassVisitor;
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz)
+    {
+        hasKotlinMetadata = false;
+        clazz.attributesAccept(kotlinMetadataFinder);
+
+        ClassVisitor classVisitor = hasKotlinMetadata ?
+            acceptedClassVisitor :
+            rejectedClassVisitor;
+
+        if (classVisitor != null)
+        {
+            clazz.accept(classVisitor);
+        }
+    }
+
+
+    // Implementations for AnnotationVisitor.
+
+    @Override
+    public void visitAnnotation(Clazz clazz, Annotation annotation)
+    {
+        hasKotlinMetadata = true;
+    }
+}
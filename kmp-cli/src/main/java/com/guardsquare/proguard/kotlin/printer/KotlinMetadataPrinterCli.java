@@ -18,8 +18,7 @@
  */
 package com.guardsquare.proguard.kotlin.printer;
 
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.text.WordUtils;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
@@ -27,22 +26,18 @@ import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 import proguard.classfile.ClassPool;
 import proguard.classfile.Clazz;
-import proguard.classfile.kotlin.KotlinConstants;
-import proguard.classfile.kotlin.KotlinDeclarationContainerMetadata;
-import proguard.classfile.kotlin.KotlinFunctionMetadata;
+import proguard.classfile.kotlin.KotlinClassKindMetadata;
 import proguard.classfile.kotlin.KotlinMetadata;
-import proguard.classfile.kotlin.KotlinSyntheticClassKindMetadata;
-import proguard.classfile.kotlin.visitor.AllFunctionVisitor;
-import proguard.classfile.kotlin.visitor.KotlinFunctionVisitor;
+import proguard.classfile.kotlin.visitor.KotlinMetadataVisitor;
 import proguard.classfile.kotlin.visitor.MultiKotlinMetadataVisitor;
 import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor;
 import proguard.classfile.util.ClassReferenceInitializer;
 import proguard.classfile.util.ClassUtil;
 import proguard.classfile.util.WarningPrinter;
 import proguard.classfile.util.kotlin.KotlinMetadataInitializer;
-import proguard.classfile.visitor.ClassCounter;
+import proguard.classfile.visitor.ClassNameFilter;
 import proguard.classfile.visitor.ClassPoolFiller;
-import proguard.classfile.visitor.ClassProcessingInfoFilter;
+import proguard.classfile.visitor.ClassVisitor;
 import proguard.classfile.visitor.MultiClassVisitor;
 import proguard.io.ClassReader;
 import proguard.io.DataEntryNameFilter;
@@ -55,13 +50,33 @@ import proguard.io.NameFilteredDataEntryReader;
 import proguard.util.ExtensionMatcher;
 import proguard.util.OrMatcher;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.io.PrintWriter;
-import java.util.Collections;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
 
 
 /**
@@ -80,214 +95,516 @@ public class KotlinMetadataPrinterCli
 implements   Runnable
 {
     @SuppressWarnings("FieldMayBeFinal")
-    @Option(names = "--filter", description = "class name filter")
+    @Option(names = "--filter", description = "class name filter; only the packages of the filter and the origin " +
+                                              "classes of their anonymous objects are parsed, unless the package " +
+                                              "names contain wildcards")
     private String classNameFilter = null;
 
     @SuppressWarnings("unused")
-    @Parameters(index = "0", arity = "1", paramLabel = "inputfile", description = "inputfile to process (*.apk|aar|jar|zip|class)")
-    private File inputFilename;
+    @Parameters(arity = "1..*", paramLabel = "inputfile", description = "inputfiles or directories with inputfiles to process (*.apk|aar|jar|zip|class)")
+    private List<File> inputFilenames;
 
     @SuppressWarnings("unused")
     @Option(names = "--output", description = "write output to this file instead of stdout")
     private File outputFile;
 
+    @SuppressWarnings("unused")
+    @Option(names = "--output-dir", description = "write the output of each input to its own file in this directory")
+    private File outputDirectory;
+
     @SuppressWarnings("FieldMayBeFinal")
     @Option(names = "--json", description = "Output JSON")
     private boolean json = false;
 
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--jsonl", description = "Output JSON Lines, with a JSON record per class")
+    private boolean jsonLines = false;
+
     @SuppressWarnings("FieldMayBeFinal")
     @Option(arity = "1", names = "--divider", description = "string to print in between Kotlin metadata items")
     private String  divider = "/* ------------------------------------------------- */\n";
 
-    private int kotlinMetadataCount = 0;
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--threads", description = "number of threads to print with, 0 for all available processors (default: 1)")
+    private int threads = 1;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--all-classes", description = "read all classes, instead of only the classes with Kotlin metadata")
+    private boolean allClasses = false;
+
+    @SuppressWarnings("unused")
+    @Option(names = "--cache-dir", description = "reuse the output of earlier runs on the same inputs, cached in this directory")
+    private File cacheDirectory;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--cache-size", description = "maximum size of the output cache, in megabytes (default: 1024)")
+    private long cacheSize = 1024L;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--stats", description = "print the time, CPU time, allocations and throughput of each phase to stderr")
+    private boolean stats = false;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--async-output", description = "write the output in a background thread, while printing")
+    private boolean asyncOutput = false;
+
+    @SuppressWarnings("unused")
+    @Option(names = "--stats-output", description = "write the statistics of each phase as JSON to this file; with several inputs, per input and for the whole run")
+    private File statsOutputFile;
+
+    // The environment of the printer, which the server sets up for each request.
+    private final File                workingDirectory;
+    private final PrintStream         out;
+    private final PrintStream         err;
+    private final WritableByteChannel outputChannel;
+    private final ExecutorService     sharedExecutor;
+
+
+    /**
+     * Creates a new KotlinMetadataPrinterCli that prints to stdout.
+     */
+    public KotlinMetadataPrinterCli()
+    {
+        this(null, System.out, System.err, null, null);
+    }
+
+
+    /**
+     * Creates a new KotlinMetadataPrinterCli.
+     * @param workingDirectory the directory against which relative file
+     *                         names are resolved, or null for the current
+     *                         working directory.
+     * @param out              the stream for messages.
+     * @param err              the stream for errors and statistics.
+     * @param outputChannel    the channel for the output, if it isn't written
+     *                         to a file, or null for stdout.
+     * @param sharedExecutor   the executor for the additional threads, which
+     *                         outlives the printer, or null to create one.
+     */
+    KotlinMetadataPrinterCli(File                workingDirectory,
+                             PrintStream         out,
+                             PrintStream         err,
+                             WritableByteChannel outputChannel,
+                             ExecutorService     sharedExecutor)
+    {
+        this.workingDirectory = workingDirectory;
+        this.out              = out;
+        this.err              = err;
+        this.outputChannel    = outputChannel;
+        this.sharedExecutor   = sharedExecutor;
+    }
 
 
     public void run()
     {
         try
         {
-            // Local variables.
-            File             inputFile              = new File(inputFilename.getAbsolutePath());
-            ClassPool        programClassPool       = new ClassPool();
-            FileOutputStream outputFileOutputStream = null;
-            PrintWriter      outPrinter;
+            print();
+        }
+        catch (Exception e)
+        {
+            err.println("Failed printing Kotlin metadata: " + e.getMessage());
+            e.printStackTrace(err);
+            System.exit(-1);
+        }
+    }
 
 
-            // Construct printer.
-            // ------------------
-            if (outputFile != null)
+    /**
+     * Prints the Kotlin metadata of the inputs, as specified by the options.
+     */
+    void print() throws Exception
+    {
+        int             threadCount = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor    = threadCount <= 1       ? null           :
+                                      sharedExecutor != null ? sharedExecutor :
+                                                               Executors.newFixedThreadPool(threadCount - 1);
+        try
+        {
+            print(inputFiles(), executor, threadCount);
+        }
+        finally
+        {
+            if (executor != null && executor != sharedExecutor)
             {
-                outputFileOutputStream = new FileOutputStream(outputFile);
-                outPrinter             = new PrintWriter(outputFileOutputStream, true);
+                executor.shutdown();
             }
-            else
+        }
+    }
+
+
+    /**
+     * Prints the Kotlin metadata of the given inputs, concurrently on the
+     * given executor, to a file per input or to a combined output.
+     */
+    private void print(List<File>      inputFiles,
+                       ExecutorService executor,
+                       int             threadCount) throws Exception
+    {
+        int          inputCount     = inputFiles.size();
+        boolean      multipleInputs = inputCount > 1;
+        JSONObject[] statistics     = new JSONObject[inputCount];
+
+        // Inputs are printed concurrently, so only the statistics of the
+        // whole run can include the CPU time and allocations of the process.
+        AtomicLong      runBytesWritten = new AtomicLong();
+        PhaseStatistics runStatistics   = multipleInputs && (stats || statsOutputFile != null) ?
+            new PhaseStatistics(runBytesWritten::get) :
+            PhaseStatistics.disabled();
+
+        out.flush();
+        if (outputDirectory != null)
+        {
+            // Write the output of each input to its own file.
+            File[] outputFiles = outputFiles(resolve(outputDirectory), inputFiles);
+
+            printInParallel(inputCount, executor, threadCount,
+                index -> statistics[index] =
+                    new InputPrinter(inputFiles.get(index), executor, threadCount, multipleInputs)
+                        .print(new FileOutputStream(outputFiles[index]).getChannel(), true),
+                null);
+        }
+        else
+        {
+            WritableByteChannel combinedChannel = outputFile    != null ? new FileOutputStream(resolve(outputFile)).getChannel() :
+                                                  outputChannel != null ? outputChannel :
+                                                                          new FileOutputStream(FileDescriptor.out).getChannel();
+            try
             {
-                outPrinter = new PrintWriter(System.out, true);
+                if (!multipleInputs)
+                {
+                    statistics[0] =
+                        new InputPrinter(inputFiles.get(0), executor, threadCount, false)
+                            .print(combinedChannel, false);
+                }
+                else
+                {
+                    printCombined(inputFiles, executor, threadCount, statistics, combinedChannel);
+                }
             }
+            finally
+            {
+                if (outputFile != null)
+                {
+                    combinedChannel.close();
+                }
+            }
+        }
 
-            ClassCounter      classCounter  = new ClassCounter();
-            MultiClassVisitor kotlinPrinter = new MultiClassVisitor(
-                 classCounter,
-                 new ReferencedKotlinMetadataVisitor(
-                 new MultiKotlinMetadataVisitor(
-                     (clazz, kotlinMetadata) -> kotlinMetadataCount++,
-                     new KotlinMetadataPrinter(programClassPool))));
+        JSONArray statisticsArray = new JSONArray();
+        int       runClassCount   = 0;
+        long      runByteCount    = 0L;
+        for (JSONObject inputStatistics : statistics)
+        {
+            if (inputStatistics != null)
+            {
+                statisticsArray.put(inputStatistics);
 
-            // Construct reader.
-            // -----------------
-            String internalClassNameFilter = classNameFilter == null ? "**" :
-                                             ClassUtil.internalClassName(classNameFilter);
+                JSONObject inputTotal = inputStatistics.getJSONObject("total");
+                runClassCount += inputTotal.getInt("classes");
+                runByteCount  += inputTotal.getLong("bytesWritten");
+            }
+        }
 
-            ClassPoolFiller classPoolFiller = new ClassPoolFiller(programClassPool);
-            DataEntryReader classReader =
-                new NameFilteredDataEntryReader("**.class",
-                new ClassReader(false, false, false, false, null,
-                        classPoolFiller));
+        runBytesWritten.set(runByteCount);
+        runStatistics.finish(runClassCount);
 
-            // Convert dex files to a JAR first.
-            classReader =
-                new NameFilteredDataEntryReader("classes*.dex",
-                new DexClassReader(false, classPoolFiller),
-                classReader);
+        if (stats && multipleInputs)
+        {
+            err.println("All inputs:");
+            runStatistics.printReport(err);
+        }
 
-            // Extract files from an archive if necessary.
-            classReader =
-                    new FilteredDataEntryReader(
-                    new DataEntryNameFilter(new ExtensionMatcher("aar")),
-                        new JarReader(
-                        new NameFilteredDataEntryReader("classes.jar",
-                        new JarReader(classReader))),
-                    new FilteredDataEntryReader(
-                    new DataEntryNameFilter(new OrMatcher(
-                                            new ExtensionMatcher("jar"),
-                                            new ExtensionMatcher("zip"),
-                                            new ExtensionMatcher("apk"))),
-                        new JarReader(classReader),
-                    classReader));
-
-            // Parse all classes from the input and fill the classpool.
-            DataEntryReader finalClassReader = classReader;
-            (new FileSource(inputFile)).pumpDataEntries(dataEntry -> {
-                try {
-                    finalClassReader.read(dataEntry);
-                } catch (Exception ignored) {}
-            });
-
-            initialize(programClassPool);
-            // Run the Kotlin printer on the classes.
-            programClassPool.classesAccept(internalClassNameFilter, kotlinPrinter);
-
-            if (json)
+        if (statsOutputFile != null)
+        {
+            try (PrintWriter statsPrinter = new PrintWriter(resolve(statsOutputFile), "UTF-8"))
             {
-                JSONObject rootObject               = new JSONObject();
-                JSONObject jsonMetadataList         = new JSONObject();
-                JSONObject statistics               = new JSONObject();
-                JSONObject javaStatistics           = new JSONObject();
-                JSONObject kotlinStatistics         = new JSONObject();
-                JSONObject kotlinMetadataStatistics = new JSONObject();
-                kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_CLASS),                   0);
-                kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_FILE_FACADE),             0);
-                kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_SYNTHETIC_CLASS),         0);
-                kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_MULTI_FILE_CLASS_FACADE), 0);
-                kotlinMetadataStatistics.put(metadataKindToString(KotlinConstants.METADATA_KIND_MULTI_FILE_CLASS_PART),   0);
-                JSONObject kotlinFunctionStatistics = new JSONObject();
-                kotlinFunctionStatistics.put("normal",    0);
-                kotlinFunctionStatistics.put("synthetic", 0);
-
-                programClassPool.classesAccept(internalClassNameFilter,
-                    new MultiClassVisitor(
-                    // Build the JSON object.
-                    new ClassProcessingInfoFilter(Objects::nonNull,
-                    new ReferencedKotlinMetadataVisitor(
-                    (clazz, kotlinMetadata) -> {
-                        JSONObject metadata = new JSONObject();
-                        metadata.put("package",    ClassUtil.externalClassName(ClassUtil.internalPackageName(clazz.getName())));
-                        metadata.put("name",       ClassUtil.externalShortClassName(ClassUtil.internalShortClassName(clazz.getName())));
-                        metadata.put("kind",       metadataKindToString(kotlinMetadata.k));
-                        metadata.put("printed",    clazz.getProcessingInfo());
-                        metadata.put("intrinsics", Collections.EMPTY_MAP); // TODO(#1929)
-                        jsonMetadataList.put(ClassUtil.externalClassName(clazz.getName()), metadata);
-                    })),
-
-                    // Collect statistics.
-                    new ReferencedKotlinMetadataVisitor(
-                    new MultiKotlinMetadataVisitor(
-                    new AllFunctionVisitor(
-                    new KotlinFunctionVisitor() {
-                        @Override
-                        public void visitFunction(Clazz clazz, KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata, KotlinFunctionMetadata kotlinFunctionMetadata) {
-                            kotlinFunctionStatistics.increment("normal");
+                statsPrinter.println(multipleInputs ?
+                                         new JSONObject()
+                                             .put("inputs", statisticsArray)
+                                             .put("run",    runStatistics.toJson())
+                                             .toString(3) :
+                                     statisticsArray.length() == 0 ?
+                                         statisticsArray.toString(3) :
+                                         statisticsArray.getJSONObject(0).toString(3));
+            }
+        }
+    }
+
+
+    /**
+     * Prints the Kotlin metadata of the given inputs concurrently, each to
+     * a temporary file, and appends the files to the combined output in
+     * order, as soon as all preceding inputs are done.
+     */
+    private void printCombined(List<File>          inputFiles,
+                               ExecutorService     executor,
+                               int                 threadCount,
+                               JSONObject[]        statistics,
+                               WritableByteChannel combinedChannel) throws Exception
+    {
+        File[]    temporaryFiles = new File[inputFiles.size()];
+        boolean[] written        = new boolean[1];
+        try
+        {
+            printInParallel(inputFiles.size(), executor, threadCount,
+                index -> {
+                    temporaryFiles[index] = File.createTempFile("kotlin-metadata", ".out");
+                    statistics[index] =
+                        new InputPrinter(inputFiles.get(index), executor, threadCount, true)
+                            .print(new FileOutputStream(temporaryFiles[index]).getChannel(), true);
+                },
+                index -> {
+                    if (index == 0)
+                    {
+                        writeFully(combinedChannel, combinedOutputHeader());
+                    }
+                    try (FileChannel temporaryChannel = FileChannel.open(temporaryFiles[index].toPath()))
+                    {
+                        // Skip inputs without output, like inputs without any
+                        // matching classes, so they don't get a separator.
+                        long size = temporaryChannel.size();
+                        if (size > 0L)
+                        {
+                            if (written[0])
+                            {
+                                writeFully(combinedChannel, combinedOutputSeparator());
+                            }
+                            written[0] = true;
                         }
 
-                        @Override
-                        public void visitSyntheticFunction(Clazz clazz, KotlinSyntheticClassKindMetadata kotlinSyntheticClassKindMetadata, KotlinFunctionMetadata kotlinFunctionMetadata) {
-                            kotlinFunctionStatistics.increment("synthetic");
+                        long position = 0L;
+                        while (position < size)
+                        {
+                            position += temporaryChannel.transferTo(position, size - position, combinedChannel);
                         }
+                    }
+                    temporaryFiles[index].delete();
+                });
 
-                        @Override
-                        public void visitAnyFunction(Clazz clazz, KotlinMetadata kotlinMetadata, KotlinFunctionMetadata kotlinFunctionMetadata) { }
-                    }),
+            writeFully(combinedChannel, combinedOutputFooter());
+        }
+        finally
+        {
+            for (File temporaryFile : temporaryFiles)
+            {
+                if (temporaryFile != null)
+                {
+                    temporaryFile.delete();
+                }
+            }
+        }
+    }
 
-                    (_clazz, kotlinMetadata) -> kotlinMetadataStatistics.increment(metadataKindToString(kotlinMetadata.k))
-                ))));
 
-                statistics.put("java",       javaStatistics.put("classes", classCounter.getCount()));
-                statistics.put("kotlin",     kotlinStatistics.put("metadata", kotlinMetadataStatistics).put("functions", kotlinFunctionStatistics));
-                rootObject.put("input",      inputFile.getName());
-                rootObject.put("statistics", statistics);
-                rootObject.put("metadata",   jsonMetadataList);
+    /**
+     * Runs the given task for each input index, in parallel on the given
+     * executor, with the calling thread taking part, like
+     * {@link ParallelClassPoolVisitor}. The optional ordered task then runs
+     * for each index, one at a time and in order, as soon as the tasks of
+     * the index and of all preceding indices are done.
+     */
+    private static void printInParallel(int             inputCount,
+                                        ExecutorService executor,
+                                        int             threadCount,
+                                        InputTask       task,
+                                        InputTask       orderedTask) throws Exception
+    {
+        AtomicInteger              nextIndex        = new AtomicInteger();
+        CountDownLatch             remaining        = new CountDownLatch(inputCount);
+        AtomicReference<Throwable> failure          = new AtomicReference<>();
+        boolean[]                  completed        = new boolean[inputCount];
+        int[]                      nextOrderedIndex = new int[1];
 
-                outPrinter.println(rootObject.toString(3));
-            }
-            else
+        Runnable worker = () -> {
+            for (int index = nextIndex.getAndIncrement(); index < inputCount; index = nextIndex.getAndIncrement())
             {
-                AtomicBoolean first = new AtomicBoolean(true);
-                programClassPool.classesAccept(
-                    new ClassProcessingInfoFilter(Objects::nonNull,
-                    clazz -> {
-                        if (!first.get())
+                try
+                {
+                    if (failure.get() == null)
+                    {
+                        task.run(index);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+                finally
+                {
+                    if (orderedTask != null)
+                    {
+                        synchronized (completed)
                         {
-                            outPrinter.println(divider);
+                            completed[index] = true;
+                            while (nextOrderedIndex[0] < inputCount && completed[nextOrderedIndex[0]])
+                            {
+                                try
+                                {
+                                    if (failure.get() == null)
+                                    {
+                                        orderedTask.run(nextOrderedIndex[0]);
+                                    }
+                                }
+                                catch (Throwable e)
+                                {
+                                    failure.compareAndSet(null, e);
+                                }
+                                nextOrderedIndex[0]++;
+                            }
                         }
-                        first.set(false);
-                        String code = (String) clazz.getProcessingInfo();
-                        outPrinter.print(code);
-                    }));
+                    }
+                    remaining.countDown();
+                }
             }
+        };
+
+        int workerCount = executor == null ? 1 : Math.min(threadCount, inputCount);
+        for (int thread = 1; thread < workerCount; thread++)
+        {
+            executor.execute(worker);
+        }
+        worker.run();
+
+        // Only wait for the inputs that other workers have claimed.
+        remaining.await();
+
+        Throwable throwable = failure.get();
+        if (throwable != null)
+        {
+            throw throwable instanceof Exception ?
+                (Exception)throwable :
+                new RuntimeException(throwable.getMessage(), throwable);
+        }
+    }
 
-            outPrinter.flush();
 
-            if (!json)
+    /**
+     * Returns the input files, with the directories replaced by the archives
+     * that they contain, if any.
+     */
+    private List<File> inputFiles()
+    {
+        List<File> inputFiles = new ArrayList<>();
+        for (File inputFilename : inputFilenames)
+        {
+            File inputFile = resolve(inputFilename);
+            if (inputFile.isDirectory())
             {
-                if (classCounter.getCount() == 0)
-                {
-                    System.out.println("No classes found");
-                }
-                else if (kotlinMetadataCount == 0)
+                List<File> archives =
+                    ForkJoinPool.commonPool().invoke(new ParallelDirectoryWalker(inputFile, KotlinMetadataPrinterCli::isZipFile));
+
+                // A directory without archives is a single input, e.g. with
+                // class files.
+                if (!archives.isEmpty())
                 {
-                    System.out.println("No Kotlin metadata found in " + classCounter.getCount() + " classes");
+                    inputFiles.addAll(archives);
+                    continue;
                 }
             }
 
-            if (outputFileOutputStream != null)
+            inputFiles.add(inputFile);
+        }
+
+        return inputFiles;
+    }
+
+
+    /**
+     * Returns unique output files in the given directory for the given
+     * input files.
+     */
+    private File[] outputFiles(File outputDirectory, List<File> inputFiles) throws IOException
+    {
+        Files.createDirectories(outputDirectory.toPath());
+
+        String      extension   = jsonLines ? ".jsonl" : json ? ".json" : ".txt";
+        Set<String> outputNames = new HashSet<>();
+        File[]      outputFiles = new File[inputFiles.size()];
+        for (int index = 0; index < outputFiles.length; index++)
+        {
+            String name       = inputFiles.get(index).getName();
+            String outputName = name + extension;
+            for (int suffix = 2; !outputNames.add(outputName); suffix++)
             {
-                outputFileOutputStream.close();
+                outputName = name + "-" + suffix + extension;
             }
+
+            outputFiles[index] = new File(outputDirectory, outputName);
         }
-        catch (Exception e)
+
+        return outputFiles;
+    }
+
+
+    /**
+     * Returns the text before the outputs of the inputs in a combined output:
+     * the start of a JSON array, if the outputs are JSON objects.
+     */
+    private String combinedOutputHeader()
+    {
+        return json && !jsonLines ? "[\n" : "";
+    }
+
+
+    /**
+     * Returns the text in between the outputs of the inputs in a combined
+     * output, which is the same as the text in between the classes of a
+     * single input.
+     */
+    private String combinedOutputSeparator()
+    {
+        return jsonLines ? "" : json ? ",\n" : divider + System.lineSeparator();
+    }
+
+
+    /**
+     * Returns the text after the outputs of the inputs in a combined output.
+     */
+    private String combinedOutputFooter()
+    {
+        return json && !jsonLines ? "]\n" : "";
+    }
+
+
+    private static void writeFully(WritableByteChannel channel, String string) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining())
         {
-            System.err.println("Failed printing Kotlin metadata: " + e.getMessage());
-            e.printStackTrace();
-            System.exit(-1);
+            channel.write(buffer);
         }
     }
 
+
     /**
      * Initializes the cached cross-references of the classes in the given
      * class pools.
      * @param programClassPool the program class pool.
      */
     public static void initialize(ClassPool programClassPool)
+    {
+        initializeKotlinMetadata(programClassPool);
+        initializeReferences(programClassPool);
+    }
+
+
+    /**
+     * Initializes the Kotlin metadata of the classes in the given class pool.
+     * @param programClassPool the program class pool.
+     */
+    public static void initializeKotlinMetadata(ClassPool programClassPool)
+    {
+        programClassPool.classesAccept(new KotlinMetadataInitializer((clazz, message) -> { }));
+    }
+
+
+    /**
+     * Initializes the other cached cross-references of the classes in the
+     * given class pool.
+     * @param programClassPool the program class pool.
+     */
+    public static void initializeReferences(ClassPool programClassPool)
     {
         WarningPrinter nullWarningPrinter = new WarningPrinter(new PrintWriter(
                 new OutputStream() {
@@ -296,10 +613,6 @@ implements   Runnable
                 }
         ));
 
-        // Initialize the Kotlin metadata.
-        programClassPool.classesAccept(new KotlinMetadataInitializer((clazz, message) -> { }));
-
-        // Initialize the other references from the program classes.
         programClassPool.classesAccept(
             new ClassReferenceInitializer(programClassPool,
                                           new ClassPool(),
@@ -309,15 +622,645 @@ implements   Runnable
                                           null));
     }
 
-    private static String metadataKindToString(int k)
+    /**
+     * Returns whether the given input file is a zip file, like a jar, an apk,
+     * or an aar.
+     */
+    private static boolean isZipFile(File file)
     {
-        String metadataKindString = KotlinConstants.metadataKindToString(k);
-        return metadataKindString.substring(0, 1).toLowerCase() +
-               StringUtils.remove(StringUtils.remove(WordUtils.capitalize(metadataKindString, '-', ' '), '-'), ' ').substring(1);
+        return new OrMatcher(new ExtensionMatcher("jar"),
+                             new ExtensionMatcher("zip"),
+                             new ExtensionMatcher("apk"),
+                             new ExtensionMatcher("aar")).matches(file.getName());
     }
 
+
+    /**
+     * Returns a filter for the classes that have to be read to print the
+     * classes that match the given internal class name filter, or null if
+     * all classes have to be read.
+     * <p>
+     * Printed classes only need their nested classes, their multi-file class
+     * parts, and their sealed subclasses, which all lie in the same package,
+     * so the filter keeps the packages of the accepted classes. Negated
+     * entries are left to the printing phase, since the printed classes may
+     * still need the classes that they exclude. Entries whose packages
+     * contain wildcards, e.g. "<code>**Foo</code>", may match any package,
+     * so they require all classes. Anonymous objects may also need their
+     * origin classes from other packages, which the caller has to check
+     * after reading.
+     * @param internalClassNameFilter the internal class name filter,
+     *                                e.g. "<code>!android/**,com/example/**</code>".
+     * @return the filter for the classes to read,
+     *                                e.g. "<code>com/example/**,com/example/*</code>".
+     */
+    private static String readerClassNameFilter(String internalClassNameFilter)
+    {
+        String[] entries = internalClassNameFilter.split(",");
+        if (entries[entries.length - 1].trim().startsWith("!"))
+        {
+            // A trailing negated entry accepts all other classes.
+            return null;
+        }
+
+        Set<String> readerEntries = new LinkedHashSet<>();
+        for (String entry : entries)
+        {
+            entry = entry.trim();
+            if (!entry.startsWith("!"))
+            {
+                int packageEnd = entry.lastIndexOf('/') + 1;
+                if (containsWildcard(entry.substring(0, packageEnd)) ||
+                    packageEnd == 0 && entry.contains("**"))
+                {
+                    return null;
+                }
+
+                readerEntries.add(entry);
+                readerEntries.add(entry.substring(0, packageEnd) + "*");
+            }
+        }
+
+        return String.join(",", readerEntries);
+    }
+
+
+    /**
+     * Returns whether the given part of a class name filter contains wildcards.
+     */
+    private static boolean containsWildcard(String filter)
+    {
+        for (int index = 0; index < filter.length(); index++)
+        {
+            char c = filter.charAt(index);
+            if (c == '*' || c == '?' || c == '<')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Returns the data entry name filter for the class files of the classes
+     * that match the given internal class name filter, once the class files
+     * are named after their classes.
+     */
+    private static String dataEntryNameFilter(String internalClassNameFilter)
+    {
+        return internalClassNameFilter.replace(",", ".class,") + ".class";
+    }
+
+
+    /**
+     * Returns the given file, resolved against the working directory.
+     */
+    private File resolve(File file)
+    {
+        return workingDirectory == null || file.isAbsolute() ?
+            file.getAbsoluteFile() :
+            new File(workingDirectory, file.getPath());
+    }
+
+
+    /**
+     * Prints the Kotlin metadata of a single input, with its own class pool
+     * and counters, so several inputs can be printed concurrently.
+     */
+    private class InputPrinter
+    {
+        private final File            inputFile;
+        private final ExecutorService executor;
+        private final int             threadCount;
+        private final boolean         multipleInputs;
+
+        private final AtomicInteger classCount          = new AtomicInteger();
+        private final AtomicInteger skippedClassCount   = new AtomicInteger();
+        private final AtomicInteger kotlinMetadataCount = new AtomicInteger();
+
+        private PhaseStatistics.Timer dexConversionTimer;
+
+
+        private InputPrinter(File            inputFile,
+                             ExecutorService executor,
+                             int             threadCount,
+                             boolean         multipleInputs)
+        {
+            this.inputFile      = inputFile;
+            this.executor       = executor;
+            this.threadCount    = threadCount;
+            this.multipleInputs = multipleInputs;
+        }
+
+
+        /**
+         * Prints the Kotlin metadata of the input to the given channel.
+         * @return the statistics of the input, if they are collected.
+         */
+        private JSONObject print(WritableByteChannel outputFileChannel,
+                                 boolean             closeOutputChannel) throws Exception
+        {
+            // Local variables.
+            ClassPool            programClassPool       = new ClassPool();
+            ChannelWriter        outputChannelWriter    = null;
+            OutputCache.Recorder outputRecorder         = null;
+            PrintWriter          outPrinter;
+            boolean              collectStats           = stats || statsOutputFile != null;
+
+
+            try
+            {
+                // Construct printer.
+                // ------------------
+                // Reuse the output of an earlier run on the same input, if possible,
+                // without even parsing the input.
+                if (cacheDirectory != null && inputFile.isFile())
+                {
+                    OutputCache outputCache = new OutputCache(resolve(cacheDirectory), cacheSize * 1024L * 1024L);
+                    String      cacheKey    = OutputCache.key(inputFile,
+                                                              classNameFilter,
+                                                              divider,
+                                                              String.valueOf(json),
+                                                              String.valueOf(jsonLines),
+                                                              String.valueOf(allClasses));
+
+                    AtomicLong      cachedByteCount = new AtomicLong();
+                    PhaseStatistics cacheStatistics = phaseStatistics(collectStats, cachedByteCount::get);
+
+                    PhaseStatistics.Phase cachePhase = cacheStatistics.startPhase("cache reading");
+                    String summary = outputCache.read(cacheKey, outputFileChannel);
+                    if (summary != null)
+                    {
+                        // Report the same messages and counts as the run that
+                        // has printed the output.
+                        JSONObject summaryObject    = new JSONObject(summary);
+                        int        cachedClassCount = summaryObject.getInt("classes");
+
+                        cachedByteCount.set(summaryObject.getLong("bytesWritten"));
+                        cachePhase.stop(cachedClassCount);
+                        cacheStatistics.finish(cachedClassCount);
+
+                        printMessages(cachedClassCount, summaryObject.getInt("kotlinMetadata"));
+
+                        return report(cacheStatistics, collectStats, true);
+                    }
+
+                    outputFileChannel = outputRecorder = outputCache.record(cacheKey, outputFileChannel);
+                }
+
+                // Encode the output straight into large buffers and write them to
+                // the channel, without flushing after every line.
+                outputChannelWriter = new ChannelWriter(outputFileChannel, closeOutputChannel, asyncOutput);
+                outPrinter          = new PrintWriter(outputChannelWriter);
+
+                // Only measure the phases if the statistics are reported.
+                PhaseStatistics phaseStatistics = phaseStatistics(collectStats, outputChannelWriter::getByteCount);
+                PhaseStatistics.Timer outputTimer = null;
+                if (collectStats)
+                {
+                    dexConversionTimer = phaseStatistics.timer("dex conversion");
+                    outputTimer        = phaseStatistics.timer("output writing");
+                }
+
+                String internalClassNameFilter = classNameFilter == null ? "**" :
+                                                 ClassUtil.internalClassName(classNameFilter);
+
+                // Writes the JSON output while printing.
+                JsonMetadataWriter jsonWriter = json || jsonLines ? new JsonMetadataWriter(outPrinter, inputFile.getName(), jsonLines) : null;
+
+                ClassVisitor outputWriter = jsonWriter != null ? jsonWriter : new ProcessingInfoWriter(outPrinter, divider);
+                if (outputTimer != null)
+                {
+                    outputWriter = outputTimer.timed(outputWriter);
+                }
+
+                // Construct reader.
+                // -----------------
+                // Only parse the classes that the printed classes may need, if possible.
+                String readerClassNameFilter = classNameFilter == null || inputFile.getName().endsWith(".class") ? null :
+                                               readerClassNameFilter(internalClassNameFilter);
+
+                // Only parse the classes with Kotlin metadata, unless all classes
+                // are requested or a single class is printed.
+                boolean kotlinClassesOnly = !allClasses && !inputFile.getName().endsWith(".class");
+
+                // Parse all classes from the input and fill the classpool.
+                PhaseStatistics.Phase readingPhase = phaseStatistics.startPhase("reading");
+                read(programClassPool, internalClassNameFilter, readerClassNameFilter, kotlinClassesOnly);
+                readingPhase.stop(programClassPool.size() + skippedClassCount.get());
+
+                PhaseStatistics.Phase kotlinMetadataPhase = phaseStatistics.startPhase("Kotlin metadata initialization");
+                initializeKotlinMetadata(programClassPool);
+
+                kotlinMetadataPhase.stop(programClassPool.size());
+
+                // Anonymous objects that were copied from inline functions get
+                // their type parameters from their origin classes, which may lie
+                // in other packages, so read any missing origin classes as well.
+                if (readerClassNameFilter != null)
+                {
+                    readMissingAnonymousObjectOrigins(programClassPool, internalClassNameFilter, kotlinClassesOnly, phaseStatistics);
+                }
+
+                PhaseStatistics.Phase referencePhase = phaseStatistics.startPhase("class reference initialization");
+                initializeReferences(programClassPool);
+                referencePhase.stop(programClassPool.size());
+
+                PhaseStatistics.Phase printingPhase = phaseStatistics.startPhase("printing");
+
+                // Run the Kotlin printer on the classes. The printers share their
+                // configuration and the index of the inner classes, but each worker
+                // gets its own printer, since printers keep their state while
+                // printing a class. The factory also decodes the constant pool
+                // strings up front, so the workers don't race to decode them.
+                // The plain text and JSON output are streamed: each class is
+                // written out, in order, as soon as it has been printed.
+                KotlinMetadataPrinterFactory printerFactory = new KotlinMetadataPrinterFactory(programClassPool);
+
+                programClassPool.accept(
+                    new ParallelClassPoolVisitor(
+                        executor,
+                        threadCount,
+                        internalClassNameFilter,
+                        () -> new MultiClassVisitor(
+                              clazz -> classCount.incrementAndGet(),
+                              new ReferencedKotlinMetadataVisitor(
+                              new MultiKotlinMetadataVisitor(
+                                  (clazz, kotlinMetadata) -> kotlinMetadataCount.incrementAndGet(),
+                                  printerFactory.createPrinter()))),
+                        outputWriter));
+
+                if (jsonWriter != null)
+                {
+                    jsonWriter.finish(totalClassCount());
+                }
+
+                outPrinter.flush();
+                if (outPrinter.checkError())
+                {
+                    throw new IOException("Can't write the output");
+                }
+                printingPhase.stop(classCount.get());
+                phaseStatistics.finish(totalClassCount());
+
+                outputChannelWriter.close();
+
+                if (outputRecorder != null)
+                {
+                    // Keep the counts, so a run that reuses the output can
+                    // report the same messages.
+                    outputRecorder.commit(new JSONObject()
+                        .put("classes",        totalClassCount())
+                        .put("kotlinMetadata", kotlinMetadataCount.get())
+                        .put("bytesWritten",   outputChannelWriter.getByteCount())
+                        .toString());
+                }
+
+                printMessages(totalClassCount(), kotlinMetadataCount.get());
+
+                return report(phaseStatistics, collectStats, false);
+            }
+            finally
+            {
+                // Release the writer, its background thread, and the channels,
+                // also if reading or printing has failed.
+                if (outputChannelWriter != null)
+                {
+                    outputChannelWriter.abort();
+                }
+                else if (closeOutputChannel)
+                {
+                    outputFileChannel.close();
+                }
+
+                // Remove the incomplete recording, if the output hasn't been
+                // committed to the cache.
+                if (outputRecorder != null)
+                {
+                    outputRecorder.discard();
+                }
+            }
+        }
+
+
+        /**
+         * Returns the statistics of the input. Inputs that are printed
+         * concurrently with other inputs don't measure the CPU time and
+         * allocations of the whole process, which would include those of
+         * the other inputs.
+         * @param collectStats whether the statistics are collected.
+         * @param bytesWritten the supplier of the number of bytes written so far.
+         */
+        private PhaseStatistics phaseStatistics(boolean collectStats, LongSupplier bytesWritten)
+        {
+            return !collectStats  ? PhaseStatistics.disabled() :
+                   multipleInputs ? PhaseStatistics.concurrent(bytesWritten) :
+                                    new PhaseStatistics(bytesWritten);
+        }
+
+
+        /**
+         * Prints the messages about missing classes or Kotlin metadata, if
+         * any, unless the output is JSON.
+         */
+        private void printMessages(int totalClassCount, int kotlinMetadataCount)
+        {
+            if (json || jsonLines)
+            {
+                return;
+            }
+
+            String inputSuffix = multipleInputs ? " in " + inputFile.getName() : "";
+            if (totalClassCount == 0)
+            {
+                out.println("No classes found" + inputSuffix);
+            }
+            else if (kotlinMetadataCount == 0)
+            {
+                out.println("No Kotlin metadata found in " + totalClassCount + " classes" + inputSuffix);
+            }
+        }
+
+
+        /**
+         * Prints the report of the given statistics, if requested.
+         * @param phaseStatistics the statistics of the input.
+         * @param collectStats    whether the statistics are collected.
+         * @param cached          whether the output has been read from the cache.
+         * @return the statistics of the input, if they are collected.
+         */
+        private JSONObject report(PhaseStatistics phaseStatistics,
+                                  boolean         collectStats,
+                                  boolean         cached) throws IOException
+        {
+            if (stats)
+            {
+                // Print the report in one go, since inputs may finish concurrently.
+                ByteArrayOutputStream report        = new ByteArrayOutputStream();
+                PrintStream           reportPrinter = new PrintStream(report, true, "UTF-8");
+                if (multipleInputs)
+                {
+                    reportPrinter.println(inputFile.getName() + ":");
+                }
+                if (cached)
+                {
+                    reportPrinter.println("Output read from the cache");
+                }
+                phaseStatistics.printReport(reportPrinter);
+                err.print(report.toString("UTF-8"));
+            }
+
+            return collectStats ?
+                phaseStatistics.toJson()
+                    .put("input",  inputFile.getName())
+                    .put("cached", cached) :
+                null;
+        }
+
+
+        /**
+         * Reads the classes of the input into the given class pool.
+         * @param programClassPool        the class pool to fill.
+         * @param internalClassNameFilter the internal class name filter of the
+         *                                printed classes.
+         * @param readerClassNameFilter   the internal class name filter of the
+         *                                classes to read, or null for all classes.
+         * @param kotlinClassesOnly       whether to skip classes without Kotlin
+         *                                metadata.
+         */
+        private void read(ClassPool programClassPool,
+                          String    internalClassNameFilter,
+                          String    readerClassNameFilter,
+                          boolean   kotlinClassesOnly) throws IOException
+        {
+            ClassVisitor classPoolFiller = new ClassPoolFiller(programClassPool);
+            if (readerClassNameFilter != null)
+            {
+                classPoolFiller = new ClassNameFilter(readerClassNameFilter, classPoolFiller);
+            }
+
+            if (executor != null && isZipFile(inputFile))
+            {
+                // Inflate and parse the entries of the zip file in parallel.
+                boolean aar = new ExtensionMatcher("aar").matches(inputFile.getName());
+                new ParallelZipReader(executor, threadCount, classVisitor -> {
+                    DataEntryReader classReader =
+                        createClassReader(internalClassNameFilter, readerClassNameFilter, kotlinClassesOnly, classVisitor);
+
+                    // Extract the classes from an aar if necessary.
+                    DataEntryReader entryReader = aar ?
+                        new NameFilteredDataEntryReader("classes.jar",
+                        new JarReader(classReader)) :
+                        classReader;
+
+                    return dataEntry -> {
+                        try {
+                            entryReader.read(dataEntry);
+                        } catch (Exception ignored) {}
+                    };
+                }).read(inputFile, classPoolFiller);
+            }
+            else
+            {
+                DataEntryReader classReader =
+                    createClassReader(internalClassNameFilter, readerClassNameFilter, kotlinClassesOnly, classPoolFiller);
+
+                // Extract files from an archive if necessary.
+                classReader =
+                        new FilteredDataEntryReader(
+                        new DataEntryNameFilter(new ExtensionMatcher("aar")),
+                            new JarReader(
+                            new NameFilteredDataEntryReader("classes.jar",
+                            new JarReader(classReader))),
+                        new FilteredDataEntryReader(
+                        new DataEntryNameFilter(new OrMatcher(
+                                                new ExtensionMatcher("jar"),
+                                                new ExtensionMatcher("zip"),
+                                                new ExtensionMatcher("apk"))),
+                            new JarReader(classReader),
+                        classReader));
+
+                DataEntryReader finalClassReader = classReader;
+                (new FileSource(inputFile)).pumpDataEntries(dataEntry -> {
+                    try {
+                        finalClassReader.read(dataEntry);
+                    } catch (Exception ignored) {}
+                });
+            }
+        }
+
+
+        /**
+         * Reads the origin classes of the anonymous objects in the given class
+         * pool that it doesn't contain yet, in further passes over the input,
+         * which only parse those classes. The passes are reported as a phase
+         * of their own.
+         * @param programClassPool        the class pool to complete.
+         * @param internalClassNameFilter the internal class name filter of the
+         *                                printed classes.
+         * @param kotlinClassesOnly       whether to skip classes without Kotlin
+         *                                metadata.
+         * @param phaseStatistics         the statistics of the input.
+         */
+        private void readMissingAnonymousObjectOrigins(ClassPool       programClassPool,
+                                                       String          internalClassNameFilter,
+                                                       boolean         kotlinClassesOnly,
+                                                       PhaseStatistics phaseStatistics) throws IOException
+        {
+            Set<String> requestedClassNames = new HashSet<>();
+            Set<String> missingClassNames   = missingAnonymousObjectOrigins(programClassPool);
+            if (missingClassNames.isEmpty())
+            {
+                return;
+            }
+
+            PhaseStatistics.Phase originPhase = phaseStatistics.startPhase("anonymous object origin reading");
+            int originClassCount = 0;
+
+            // Origin classes may be anonymous objects themselves. Classes
+            // that aren't part of the input are only requested once.
+            while (!missingClassNames.isEmpty())
+            {
+                requestedClassNames.addAll(missingClassNames);
+
+                ClassPool originClassPool = new ClassPool();
+                read(originClassPool, internalClassNameFilter, String.join(",", missingClassNames), kotlinClassesOnly);
+                initializeKotlinMetadata(originClassPool);
+                originClassPool.classesAccept(new ClassPoolFiller(programClassPool));
+                originClassCount += originClassPool.size();
+
+                missingClassNames = missingAnonymousObjectOrigins(programClassPool);
+                missingClassNames.removeAll(requestedClassNames);
+            }
+
+            originPhase.stop(originClassCount);
+        }
+
+
+        /**
+         * Returns the names of the origin classes of the anonymous objects
+         * in the given class pool that it doesn't contain.
+         */
+        private Set<String> missingAnonymousObjectOrigins(ClassPool programClassPool)
+        {
+            Set<String> missingClassNames = new LinkedHashSet<>();
+            programClassPool.classesAccept(
+                new ReferencedKotlinMetadataVisitor(
+                new KotlinMetadataVisitor()
+                {
+                    @Override
+                    public void visitAnyKotlinMetadata(Clazz clazz, KotlinMetadata kotlinMetadata) { }
+
+
+                    @Override
+                    public void visitKotlinClassMetadata(Clazz clazz, KotlinClassKindMetadata kotlinClassKindMetadata)
+                    {
+                        if (kotlinClassKindMetadata.anonymousObjectOriginName != null &&
+                            programClassPool.getClass(kotlinClassKindMetadata.anonymousObjectOriginName) == null)
+                        {
+                            missingClassNames.add(kotlinClassKindMetadata.anonymousObjectOriginName);
+                        }
+                    }
+                }));
+            return missingClassNames;
+        }
+
+
+        /**
+         * Creates a reader for class files and dex files that passes the classes
+         * that it reads to the given class visitor.
+         * @param internalClassNameFilter the internal class name filter of the
+         *                                printed classes.
+         * @param readerClassNameFilter   the internal class name filter of the
+         *                                classes to read, or null for all classes.
+         * @param kotlinClassesOnly       whether to skip classes without Kotlin
+         *                                metadata.
+         * @param classVisitor            the visitor for the classes that are read.
+         */
+        private DataEntryReader createClassReader(String       internalClassNameFilter,
+                                                  String       readerClassNameFilter,
+                                                  boolean      kotlinClassesOnly,
+                                                  ClassVisitor classVisitor)
+        {
+            DataEntryReader classReader =
+                new ClassReader(false, false, false, false, null,
+                        classVisitor);
+
+            ClassVisitor dexClassVisitor = classVisitor;
+
+            // The printer never needs the classes without Kotlin metadata, but
+            // they are still counted.
+            if (kotlinClassesOnly)
+            {
+                classReader =
+                    new KotlinClassDataEntryReader(classReader,
+                    new NameFilteredDataEntryReader(dataEntryNameFilter(internalClassNameFilter),
+                        dataEntry -> skippedClassCount.incrementAndGet()));
+
+                // Dex classes can only be checked after conversion.
+                dexClassVisitor =
+                    new KotlinMetadataClassFilter(classVisitor,
+                    new ClassNameFilter(internalClassNameFilter,
+                        clazz -> skippedClassCount.incrementAndGet()));
+            }
+
+            if (readerClassNameFilter != null)
+            {
+                classReader =
+                    new NameFilteredDataEntryReader(dataEntryNameFilter(readerClassNameFilter),
+                    classReader);
+            }
+
+            // Filter the class files by their class names rather than by their
+            // entry paths, which may differ, e.g. in multi-release jars.
+            if (classNameFilter != null)
+            {
+                classReader = new ClassNameDataEntryReader(classReader);
+            }
+
+            classReader =
+                new NameFilteredDataEntryReader("**.class",
+                classReader);
+
+            // Convert dex files to a JAR first.
+            return
+                new NameFilteredDataEntryReader("classes*.dex",
+                dexConversionTimer != null ?
+                    dexConversionTimer.timed(new DexClassReader(false, dexClassVisitor)) :
+                    new DexClassReader(false, dexClassVisitor),
+                classReader);
+        }
+
+
+        /**
+         * Returns the number of classes that match the class name filter,
+         * including the classes that were skipped while reading the input.
+         */
+        private int totalClassCount()
+        {
+            return classCount.get() + skippedClassCount.get();
+        }
+    }
+
+
+    /**
+     * A task for the input with the given index.
+     */
+    private interface InputTask
+    {
+        void run(int index) throws Exception;
+    }
+
+
     public static void main(String[] args)
     {
+        if (args.length > 0 && args[0].equals(KotlinMetadataPrinterServer.COMMAND))
+        {
+            CommandLine.run(new KotlinMetadataPrinterServer(), System.out, Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         CommandLine.run(new KotlinMetadataPrinterCli(), System.out, args);
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * Client that lets a {@link KotlinMetadataPrinterServer} print the Kotlin
+ * metadata, with the given port followed by the usual command-line
+ * arguments of the printer, e.g.:
+ * <pre>
+ *     java -cp kotlin-metadata-printer.jar com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinterClient 8123 --json app.jar
+ * </pre>
+ * It sends the access token of the server along, which it reads from
+ * {@link KotlinMetadataPrinterServer#defaultTokenFile(int)}, or from the
+ * file given by a leading <code>--token-file file</code> option.
+ * It copies the output and the errors of the server to stdout and stderr,
+ * and exits with the exit status of the server.
+ *
+ * @author James Hamilton
+ */
+public class KotlinMetadataPrinterClient
+{
+    public static void main(String[] args)
+    {
+        File tokenFile = null;
+        if (args.length >= 2 && args[0].equals("--token-file"))
+        {
+            tokenFile = new File(args[1]);
+            args      = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        if (args.length < 1)
+        {
+            System.err.println("Usage: KotlinMetadataPrinterClient [--token-file <file>] <port> [options] <inputfile>");
+            System.exit(2);
+        }
+
+        int port = Integer.parseInt(args[0]);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port))
+        {
+            if (tokenFile == null)
+            {
+                tokenFile = KotlinMetadataPrinterServer.defaultTokenFile(port);
+            }
+            String token = new String(Files.readAllBytes(tokenFile.toPath()), StandardCharsets.UTF_8).trim();
+
+            JSONObject request = new JSONObject()
+                .put("token",     token)
+                .put("directory", new File("").getAbsolutePath())
+                .put("arguments", new JSONArray(Arrays.asList(args).subList(1, args.length)));
+
+            Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            writer.write(request.toString());
+            writer.write('\n');
+            writer.flush();
+
+            System.exit(copyFrames(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                                   System.out,
+                                   System.err));
+        }
+        catch (Exception e)
+        {
+            System.err.println("Failed contacting the Kotlin metadata printer server: " + e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+
+    /**
+     * Copies the output frames and the error frames from the given stream to
+     * the given output streams, until the exit frame.
+     * @return the exit status in the exit frame.
+     */
+    private static int copyFrames(DataInputStream frameStream,
+                                  PrintStream     out,
+                                  PrintStream     err) throws IOException
+    {
+        byte[] buffer = new byte[64 * 1024];
+
+        try
+        {
+            while (true)
+            {
+                byte type   = frameStream.readByte();
+                int  length = frameStream.readInt();
+
+                if (type == KotlinMetadataPrinterServer.EXIT_FRAME)
+                {
+                    int status = frameStream.readInt();
+                    out.flush();
+                    err.flush();
+                    return status;
+                }
+
+                OutputStream target = type == KotlinMetadataPrinterServer.ERROR_FRAME ? err : out;
+                while (length > 0)
+                {
+                    int count = frameStream.read(buffer, 0, Math.min(length, buffer.length));
+                    if (count < 0)
+                    {
+                        throw new EOFException();
+                    }
+                    target.write(buffer, 0, count);
+                    length -= count;
+                }
+            }
+        }
+        catch (EOFException e)
+        {
+            throw new IOException("Unexpected end of the server reply");
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server that keeps a warm JVM to print Kotlin metadata for its clients, so
+ * they don't pay for starting the JVM, loading the classes, and compiling
+ * the printer for every input.
+ * <p>
+ * The server listens on a loopback port. Since any local user can connect
+ * to it, and the printer reads and writes files with the privileges of the
+ * server, the server writes a random token to a file that only its owner
+ * can read, by default {@link #defaultTokenFile(int)}. A client sends a
+ * single request line per connection, with a JSON object that contains the
+ * token, the working directory of the client, and the command-line
+ * arguments of the printer:
+ * <pre>
+ *     {"token":"...","directory":"/home/user/project","arguments":["--json","app.jar"]}
+ * </pre>
+ * The server rejects requests without the right token. Since the request
+ * line is read before the token can be checked, it is limited in length and
+ * in time, and the server only serves a limited number of connections at a
+ * time, closing any further connections right away.
+ * The server replies with frames, each a type byte, a big-endian length,
+ * and the payload: {@link #OUTPUT_FRAME} for the output,
+ * {@link #ERROR_FRAME} for the errors and statistics, and finally
+ * {@link #EXIT_FRAME} with the exit status as a big-endian int.
+ * {@link KotlinMetadataPrinterClient} implements the client side.
+ *
+ * @author James Hamilton
+ */
+@Command(name                 = "kotlin-metadata-printer serve",
+         description          = "\nServe Kotlin metadata printing requests on a loopback port, from a warm JVM.",
+         optionListHeading    = "%nOptions:%n",
+         header               = "\nKotlin metadata printer server, built on the ProGuard Core library.\n")
+public class KotlinMetadataPrinterServer
+implements   Runnable
+{
+    public static final String COMMAND = "serve";
+
+    public static final byte OUTPUT_FRAME = 'O';
+    public static final byte ERROR_FRAME  = 'E';
+    public static final byte EXIT_FRAME   = 'X';
+
+    // Clients send their request line right after connecting.
+    private static final int REQUEST_TIMEOUT_MILLIS = 10_000;
+    private static final int MAX_REQUEST_LENGTH     = 1024 * 1024;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--port", description = "loopback port to listen on, 0 for any free port (default: 0)")
+    private int port = 0;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--threads", description = "number of threads that the requests share for printing, 0 for all available processors (default: 0)")
+    private int threads = 0;
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @Option(names = "--connections", description = "maximum number of connections that are served at the same time, and that wait to be served (default: 16)")
+    private int connections = 16;
+
+    @SuppressWarnings("unused")
+    @Option(names = "--token-file", description = "file to write the access token to (default: ~/.kotlin-metadata-printer/server-<port>.token)")
+    private File tokenFile;
+
+
+    public void run()
+    {
+        int                threadCount        = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        int                connectionCount    = Math.max(1, connections);
+        ExecutorService    sharedExecutor     = threadCount > 1 ? Executors.newFixedThreadPool(threadCount - 1) : null;
+        ThreadPoolExecutor connectionExecutor = new ThreadPoolExecutor(connectionCount,
+                                                                       connectionCount,
+                                                                       60L, TimeUnit.SECONDS,
+                                                                       new ArrayBlockingQueue<>(connectionCount));
+        connectionExecutor.allowCoreThreadTimeOut(true);
+
+        try (ServerSocket serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress()))
+        {
+            File   tokenFile = this.tokenFile != null ? this.tokenFile : defaultTokenFile(serverSocket.getLocalPort());
+            String token     = newToken();
+            writeTokenFile(tokenFile, token);
+            tokenFile.deleteOnExit();
+
+            System.out.println("Listening on port " + serverSocket.getLocalPort() + ", with the access token in " + tokenFile);
+
+            while (true)
+            {
+                Socket socket = serverSocket.accept();
+                try
+                {
+                    connectionExecutor.execute(() -> serve(socket, token, sharedExecutor));
+                }
+                catch (RejectedExecutionException e)
+                {
+                    // Too many connections are already waiting.
+                    socket.close();
+                }
+            }
+        }
+        catch (Exception e)
+        {
+            System.err.println("Failed serving Kotlin metadata: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+
+    /**
+     * Returns the default file for the access token of a server on the given
+     * port, in a directory in the home directory of the user.
+     */
+    public static File defaultTokenFile(int port)
+    {
+        return new File(System.getProperty("user.home"), ".kotlin-metadata-printer/server-" + port + ".token");
+    }
+
+
+    /**
+     * Returns a new random access token.
+     */
+    private static String newToken()
+    {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+
+        StringBuilder token = new StringBuilder(2 * bytes.length);
+        for (byte b : bytes)
+        {
+            token.append(String.format("%02x", b & 0xff));
+        }
+        return token.toString();
+    }
+
+
+    /**
+     * Writes the given token to the given file, so that only the owner of
+     * the file can read it. The file is created with these permissions
+     * before the token is written, and then moved into place.
+     */
+    private static void writeTokenFile(File tokenFile, String token) throws IOException
+    {
+        Path    directory = tokenFile.getAbsoluteFile().getParentFile().toPath();
+        boolean posix     = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+        Path temporaryFile;
+        if (posix)
+        {
+            if (!Files.isDirectory(directory))
+            {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+            }
+            temporaryFile = Files.createTempFile(directory, "server", ".tmp", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        else
+        {
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, "server", ".tmp");
+
+            File file = temporaryFile.toFile();
+            if (!file.setReadable(false, false) || !file.setReadable(true, true) ||
+                !file.setWritable(false, false) || !file.setWritable(true, true))
+            {
+                Files.delete(temporaryFile);
+                throw new IOException("Can't restrict the permissions of the token file [" + tokenFile + "]");
+            }
+        }
+
+        try
+        {
+            Files.write(temporaryFile, token.getBytes(StandardCharsets.UTF_8));
+            Files.move(temporaryFile, tokenFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+
+    /**
+     * Serves the request of the given connection.
+     */
+    private static void serve(Socket socket, String token, ExecutorService sharedExecutor)
+    {
+        try (Socket ignored = socket)
+        {
+            // Don't let idle connections hold on to a thread.
+            socket.setSoTimeout(REQUEST_TIMEOUT_MILLIS);
+
+            BufferedReader reader =
+                new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            DataOutputStream frameStream =
+                new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            FrameOutputStream outputStream = new FrameOutputStream(frameStream, OUTPUT_FRAME);
+            PrintStream       out          = new PrintStream(outputStream, true, "UTF-8");
+            PrintStream       err          = new PrintStream(new FrameOutputStream(frameStream, ERROR_FRAME), true, "UTF-8");
+
+            String requestLine = readRequestLine(reader);
+            socket.setSoTimeout(0);
+
+            int status = print(requestLine, token, out, err, outputStream, sharedExecutor);
+
+            out.flush();
+            err.flush();
+            frameStream.writeByte(EXIT_FRAME);
+            frameStream.writeInt(4);
+            frameStream.writeInt(status);
+            frameStream.flush();
+        }
+        catch (Exception e)
+        {
+            System.err.println("Failed serving request: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Reads the request line from the given reader, up to a maximum length.
+     * @return the request line, or null if the client has closed the
+     *         connection without sending anything.
+     */
+    private static String readRequestLine(BufferedReader reader) throws IOException
+    {
+        StringBuilder requestLine = new StringBuilder();
+        while (true)
+        {
+            int c = reader.read();
+            if (c < 0)
+            {
+                return requestLine.length() > 0 ? requestLine.toString() : null;
+            }
+            if (c == '\n')
+            {
+                int length = requestLine.length();
+                if (length > 0 && requestLine.charAt(length - 1) == '\r')
+                {
+                    requestLine.setLength(length - 1);
+                }
+                return requestLine.toString();
+            }
+            if (requestLine.length() == MAX_REQUEST_LENGTH)
+            {
+                throw new IOException("Request longer than " + MAX_REQUEST_LENGTH + " characters");
+            }
+            requestLine.append((char)c);
+        }
+    }
+
+
+    /**
+     * Prints the Kotlin metadata for the given request line.
+     * @return the exit status.
+     */
+    private static int print(String          requestLine,
+                             String          token,
+                             PrintStream     out,
+                             PrintStream     err,
+                             OutputStream    outputStream,
+                             ExecutorService sharedExecutor)
+    {
+        KotlinMetadataPrinterCli cli;
+        try
+        {
+            if (requestLine == null)
+            {
+                throw new IOException("Missing request");
+            }
+
+            JSONObject request      = new JSONObject(requestLine);
+            String     requestToken = request.optString("token", "");
+
+            // Compare in constant time, so the token can't be guessed from the timing.
+            if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                                       requestToken.getBytes(StandardCharsets.UTF_8)))
+            {
+                err.println("Unauthorized request: missing or invalid access token");
+                return 2;
+            }
+
+            String     directory = request.optString("directory", null);
+            JSONArray  arguments = request.getJSONArray("arguments");
+
+            String[] args = new String[arguments.length()];
+            for (int index = 0; index < args.length; index++)
+            {
+                args[index] = arguments.getString(index);
+            }
+
+            cli = new KotlinMetadataPrinterCli(directory == null ? null : new File(directory),
+                                               out,
+                                               err,
+                                               Channels.newChannel(outputStream),
+                                               sharedExecutor);
+
+            CommandLine.populateCommand(cli, args);
+        }
+        catch (Exception e)
+        {
+            err.println("Invalid request: " + e.getMessage());
+            CommandLine.usage(new KotlinMetadataPrinterCli(), err);
+            return 2;
+        }
+
+        try
+        {
+            cli.print();
+            return 0;
+        }
+        catch (Exception e)
+        {
+            err.println("Failed printing Kotlin metadata: " + e.getMessage());
+            return 1;
+        }
+    }
+
+
+    /**
+     * This {@link OutputStream} writes the bytes that it receives as frames
+     * of the given type to the given stream, which it may share with other
+     * frame output streams.
+     */
+    private static class FrameOutputStream
+    extends              OutputStream
+    {
+        private final DataOutputStream frameStream;
+        private final byte             type;
+
+
+        private FrameOutputStream(DataOutputStream frameStream, byte type)
+        {
+            this.frameStream = frameStream;
+            this.type        = type;
+        }
+
+
+        // Implementations for OutputStream.
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException
+        {
+            if (length > 0)
+            {
+                synchronized (frameStream)
+                {
+                    frameStream.writeByte(type);
+                    frameStream.writeInt(length);
+                    frameStream.write(bytes, offset, length);
+                }
+            }
+        }
+
+
+        @Override
+        public void flush() throws IOException
+        {
+            synchronized (frameStream)
+            {
+                frameStream.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Content-addressed cache of printed output, in a directory on disk.
+ * <p>
+ * The output is stored per input file, under a hash of the printer version,
+ * the options that affect the output, and the bytes of the input. The
+ * printed metadata of a class depends on other classes of the same input,
+ * like its nested classes and sealed subclasses, so the output of a single
+ * class can't be cached by itself.
+ * <p>
+ * Each entry also holds a short summary of the run that has printed it, like
+ * its class counts, so a run that reuses the output can report the same
+ * messages and statistics. The summary follows the output, with its length
+ * in the last four bytes of the entry.
+ * <p>
+ * Reading an entry marks it as recently used, and storing an entry evicts
+ * the least recently used entries until the cache fits its maximum size.
+ * Several processes can share the cache directory, since entries are only
+ * ever added by atomic renames.
+ *
+ * @author James Hamilton
+ */
+public class OutputCache
+{
+    private static final String ENTRY_SUFFIX            = ".out";
+    private static final String TEMPORARY_SUFFIX        = ".tmp";
+    private static final int    SUMMARY_LENGTH_SIZE     = 4;
+
+    // Temporary files of runs that have crashed are cleaned up after a day.
+    private static final long   TEMPORARY_FILE_LIFETIME = 24L * 60L * 60L * 1000L;
+
+    private final File directory;
+    private final long maximumSize;
+
+
+    /**
+     * Creates a new OutputCache.
+     * @param directory   the cache directory, which is created if necessary.
+     * @param maximumSize the maximum total size of the cached entries, in bytes.
+     */
+    public OutputCache(File directory, long maximumSize) throws IOException
+    {
+        this.directory   = directory;
+        this.maximumSize = maximumSize;
+
+        Files.createDirectories(directory.toPath());
+    }
+
+
+    /**
+     * Returns the cache key for the given input file and options.
+     * @param inputFile the input file.
+     * @param options   the options that affect the output.
+     */
+    public static String key(File inputFile, String... options) throws IOException
+    {
+        MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IOException("Can't compute cache keys (" + e.getMessage() + ")", e);
+        }
+
+        update(digest, printerVersion());
+        update(digest, inputFile.getName());
+        for (String option : options)
+        {
+            update(digest, String.valueOf(option));
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = new FileInputStream(inputFile))
+        {
+            int count;
+            while ((count = inputStream.read(buffer)) >= 0)
+            {
+                digest.update(buffer, 0, count);
+            }
+        }
+
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest())
+        {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16))
+               .append(Character.forDigit( b       & 0xf, 16));
+        }
+
+        return key.toString();
+    }
+
+
+    /**
+     * Writes the cached output with the given key to the given channel, if
+     * present.
+     * @return the summary that was committed with the output, or null if
+     *         the output isn't present.
+     */
+    public String read(String key, WritableByteChannel channel) throws IOException
+    {
+        File entryFile = entryFile(key);
+
+        FileChannel entryChannel;
+        try
+        {
+            entryChannel = FileChannel.open(entryFile.toPath(), StandardOpenOption.READ);
+        }
+        catch (IOException e)
+        {
+            // The entry isn't present, or has just been evicted.
+            return null;
+        }
+
+        try (FileChannel ignored = entryChannel)
+        {
+            // Read the summary at the end of the entry.
+            long entrySize = entryChannel.size();
+            if (entrySize < SUMMARY_LENGTH_SIZE)
+            {
+                return null;
+            }
+
+            ByteBuffer summaryLengthBuffer = ByteBuffer.allocate(SUMMARY_LENGTH_SIZE);
+            readFully(entryChannel, summaryLengthBuffer, entrySize - SUMMARY_LENGTH_SIZE);
+
+            int  summaryLength = summaryLengthBuffer.getInt(0);
+            long outputSize    = entrySize - SUMMARY_LENGTH_SIZE - summaryLength;
+            if (summaryLength < 0 || outputSize < 0L)
+            {
+                // The entry is corrupt, so treat it as missing.
+                return null;
+            }
+
+            ByteBuffer summaryBuffer = ByteBuffer.allocate(summaryLength);
+            readFully(entryChannel, summaryBuffer, outputSize);
+
+            // Mark the entry as recently used.
+            entryFile.setLastModified(System.currentTimeMillis());
+
+            long position = 0L;
+            while (position < outputSize)
+            {
+                position += entryChannel.transferTo(position, outputSize - position, channel);
+            }
+
+            return new String(summaryBuffer.array(), StandardCharsets.UTF_8);
+        }
+    }
+
+
+    /**
+     * Returns a channel that writes to the given channel, while recording
+     * the output under the given key.
+     */
+    public Recorder record(String key, WritableByteChannel channel) throws IOException
+    {
+        return new Recorder(key, channel);
+    }
+
+
+    // Small utility methods.
+
+    private File entryFile(String key)
+    {
+        return new File(directory, key + ENTRY_SUFFIX);
+    }
+
+
+    /**
+     * Evicts the least recently used entries, until the cache fits its
+     * maximum size, and deletes stale temporary files.
+     */
+    private void evict()
+    {
+        File[] temporaryFiles = directory.listFiles((dir, name) -> name.endsWith(TEMPORARY_SUFFIX));
+        if (temporaryFiles != null)
+        {
+            long staleTime = System.currentTimeMillis() - TEMPORARY_FILE_LIFETIME;
+            for (File temporaryFile : temporaryFiles)
+            {
+                if (temporaryFile.lastModified() < staleTime)
+                {
+                    temporaryFile.delete();
+                }
+            }
+        }
+
+        File[] entryFiles = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (entryFiles == null)
+        {
+            return;
+        }
+
+        long totalSize = 0L;
+        for (File entryFile : entryFiles)
+        {
+            totalSize += entryFile.length();
+        }
+
+        Arrays.sort(entryFiles, Comparator.comparingLong(File::lastModified));
+
+        for (int index = 0; totalSize > maximumSize && index < entryFiles.length; index++)
+        {
+            long size = entryFiles[index].length();
+            if (entryFiles[index].delete())
+            {
+                totalSize -= size;
+            }
+        }
+    }
+
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                throw new IOException("Unexpected end of cache entry");
+            }
+        }
+    }
+
+
+    private static void update(MessageDigest digest, String string)
+    {
+        digest.update(string.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte)0);
+    }
+
+
+    /**
+     * Returns the version of the printer, so a new printer doesn't reuse the
+     * output of an older one.
+     */
+    private static String printerVersion()
+    {
+        String version = OutputCache.class.getPackage().getImplementationVersion();
+        if (version != null)
+        {
+            return version;
+        }
+
+        // Fall back to the timestamp of the classes, e.g. in development builds.
+        try
+        {
+            File codeSource = new File(OutputCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            return "development-" + codeSource.lastModified();
+        }
+        catch (Exception e)
+        {
+            return "development";
+        }
+    }
+
+
+    /**
+     * This {@link WritableByteChannel} writes to its delegate channel, while
+     * recording the output in a temporary file. Committing the recording
+     * adds it to the cache.
+     */
+    public class Recorder
+    implements   WritableByteChannel
+    {
+        private final String              key;
+        private final WritableByteChannel channel;
+        private final File                temporaryFile;
+        private final FileChannel         temporaryChannel;
+
+        private boolean committed;
+
+
+        private Recorder(String key, WritableByteChannel channel) throws IOException
+        {
+            this.key              = key;
+            this.channel          = channel;
+            this.temporaryFile    = File.createTempFile(key, TEMPORARY_SUFFIX, directory);
+            this.temporaryChannel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE);
+        }
+
+
+        /**
+         * Adds the recorded output to the cache.
+         * @param summary the summary of the run, which is returned again
+         *                when the output is read.
+         */
+        public void commit(String summary) throws IOException
+        {
+            byte[]     summaryBytes  = summary.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer summaryBuffer = ByteBuffer.allocate(summaryBytes.length + SUMMARY_LENGTH_SIZE);
+            summaryBuffer.put(summaryBytes);
+            summaryBuffer.putInt(summaryBytes.length);
+            summaryBuffer.flip();
+            while (summaryBuffer.hasRemaining())
+            {
+                temporaryChannel.write(summaryBuffer);
+            }
+
+            temporaryChannel.close();
+            Files.move(temporaryFile.toPath(),
+                       entryFile(key).toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+
+            committed = true;
+
+            evict();
+        }
+
+
+        /**
+         * Discards the recorded output, e.g. after an error, unless it has
+         * already been committed.
+         */
+        public void discard()
+        {
+            if (committed)
+            {
+                return;
+            }
+
+            try
+            {
+                temporaryChannel.close();
+            }
+            catch (IOException ignored) {}
+
+            temporaryFile.delete();
+        }
+
+
+        // Implementations for WritableByteChannel.
+
+        @Override
+        public int write(ByteBuffer buffer) throws IOException
+        {
+            ByteBuffer recordedBuffer = buffer.duplicate();
+
+            int count = channel.write(buffer);
+
+            // Record the bytes that have actually been written.
+            recordedBuffer.limit(recordedBuffer.position() + count);
+            while (recordedBuffer.hasRemaining())
+            {
+                temporaryChannel.write(recordedBuffer);
+            }
+
+            return count;
+        }
+
+
+        @Override
+        public boolean isOpen()
+        {
+            return channel.isOpen();
+        }
+
+
+        @Override
+        public void close() throws IOException
+        {
+            channel.close();
+        }
+    }
+}
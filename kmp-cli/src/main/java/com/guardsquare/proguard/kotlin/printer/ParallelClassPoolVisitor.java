@@ -0,0 +1,235 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.visitor.ClassPoolVisitor;
+import proguard.classfile.visitor.ClassVisitor;
+import proguard.classfile.visitor.MultiClassVisitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This {@link ClassPoolVisitor} lets the class visitors created by the given
+ * factory visit the classes of the class pools that it visits, in parallel.
+ * <p>
+ * Each worker gets its own class visitor, so class visitors with mutable
+ * state, like the Kotlin metadata printer, don't need to be thread-safe.
+ * The calling thread takes part in the work, so the visitor can be used from
+ * tasks that run on the same executor without starving it.
+ * <p>
+ * An optional ordered class visitor then visits each class after its worker
+ * is done with it, one class at a time and in the order of the class pool,
+ * so it can for instance write out the results as they become available.
+ *
+ * @author James Hamilton
+ */
+public class ParallelClassPoolVisitor
+implements   ClassPoolVisitor
+{
+    private final ExecutorService     executor;
+    private final int                 threadCount;
+    private final String              classNameFilter;
+    private final ClassVisitorFactory classVisitorFactory;
+    private final ClassVisitor        orderedClassVisitor;
+
+
+    /**
+     * Creates a new ParallelClassPoolVisitor.
+     * @param executor            the executor that runs the additional workers,
+     *                            or null to visit all classes in the calling thread.
+     * @param threadCount         the total number of workers, including the
+     *                            calling thread.
+     * @param classNameFilter     the filter for the names of the classes to visit.
+     * @param classVisitorFactory the factory for the class visitor of each worker.
+     */
+    public ParallelClassPoolVisitor(ExecutorService     executor,
+                                    int                 threadCount,
+                                    String              classNameFilter,
+                                    ClassVisitorFactory classVisitorFactory)
+    {
+        this(executor, threadCount, classNameFilter, classVisitorFactory, null);
+    }
+
+
+    /**
+     * Creates a new ParallelClassPoolVisitor.
+     * @param executor            the executor that runs the additional workers,
+     *                            or null to visit all classes in the calling thread.
+     * @param threadCount         the total number of workers, including the
+     *                            calling thread.
+     * @param classNameFilter     the filter for the names of the classes to visit.
+     * @param classVisitorFactory the factory for the class visitor of each worker.
+     * @param orderedClassVisitor an optional class visitor that visits the
+     *                            classes in order, after the workers.
+     */
+    public ParallelClassPoolVisitor(ExecutorService     executor,
+                                    int                 threadCount,
+                                    String              classNameFilter,
+                                    ClassVisitorFactory classVisitorFactory,
+                                    ClassVisitor        orderedClassVisitor)
+    {
+        this.executor            = executor;
+        this.threadCount         = executor == null ? 1 : threadCount;
+        this.classNameFilter     = classNameFilter;
+        this.classVisitorFactory = classVisitorFactory;
+        this.orderedClassVisitor = orderedClassVisitor;
+    }
+
+
+    // Implementations for ClassPoolVisitor.
+
+    @Override
+    public void visitClassPool(ClassPool classPool)
+    {
+        if (threadCount <= 1)
+        {
+            ClassVisitor classVisitor = classVisitorFactory.createClassVisitor();
+            classPool.classesAccept(classNameFilter,
+                                    orderedClassVisitor == null ? classVisitor :
+                                    new MultiClassVisitor(classVisitor, orderedClassVisitor));
+            return;
+        }
+
+        // Collect the classes up front, so the workers can share them out by index.
+        List<Clazz> classes = new ArrayList<>(classPool.size());
+        classPool.classesAccept(classNameFilter, classes::add);
+
+        AtomicInteger              nextIndex  = new AtomicInteger();
+        CountDownLatch             remaining  = new CountDownLatch(classes.size());
+        AtomicReference<Throwable> failure    = new AtomicReference<>();
+        OrderedCompletion          completion = new OrderedCompletion(classes, failure);
+
+        Runnable worker = () -> {
+            ClassVisitor classVisitor = null;
+            for (int index = nextIndex.getAndIncrement(); index < classes.size(); index = nextIndex.getAndIncrement())
+            {
+                try
+                {
+                    if (failure.get() == null)
+                    {
+                        if (classVisitor == null)
+                        {
+                            classVisitor = classVisitorFactory.createClassVisitor();
+                        }
+                        classes.get(index).accept(classVisitor);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+                finally
+                {
+                    completion.complete(index);
+                    remaining.countDown();
+                }
+            }
+        };
+
+        for (int thread = 1; thread < threadCount; thread++)
+        {
+            executor.execute(worker);
+        }
+        worker.run();
+
+        // Only wait for the classes that other workers have claimed; workers
+        // that start late find no work left.
+        try
+        {
+            remaining.await();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while visiting classes", e);
+        }
+
+        Throwable throwable = failure.get();
+        if (throwable != null)
+        {
+            throw throwable instanceof RuntimeException ?
+                (RuntimeException)throwable :
+                new RuntimeException(throwable.getMessage(), throwable);
+        }
+    }
+
+
+    /**
+     * Tracks the classes that the workers have completed, and lets the
+     * ordered class visitor visit them as soon as all preceding classes
+     * have been completed as well.
+     */
+    private class OrderedCompletion
+    {
+        private final List<Clazz>                classes;
+        private final AtomicReference<Throwable> failure;
+        private final boolean[]                  completed;
+        private       int                        nextIndex;
+
+
+        private OrderedCompletion(List<Clazz> classes, AtomicReference<Throwable> failure)
+        {
+            this.classes   = classes;
+            this.failure   = failure;
+            this.completed = new boolean[classes.size()];
+        }
+
+
+        private synchronized void complete(int index)
+        {
+            if (orderedClassVisitor == null)
+            {
+                return;
+            }
+
+            completed[index] = true;
+            while (nextIndex < completed.length && completed[nextIndex])
+            {
+                try
+                {
+                    if (failure.get() == null)
+                    {
+                        classes.get(nextIndex).accept(orderedClassVisitor);
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+                nextIndex++;
+            }
+        }
+    }
+
+
+    /**
+     * Creates a class visitor for each worker.
+     */
+    public interface ClassVisitorFactory
+    {
+        ClassVisitor createClassVisitor();
+    }
+}
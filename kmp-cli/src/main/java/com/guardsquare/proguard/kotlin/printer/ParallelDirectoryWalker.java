@@ -0,0 +1,93 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This {@link RecursiveTask} collects the files that match the given filter
+ * in a directory and its subdirectories, listing the subdirectories in
+ * parallel. The files are sorted by path, so the result doesn't depend on
+ * the order in which the subdirectories are listed. Symbolic links to
+ * directories are not followed, so links to parent directories can't make
+ * the walk recurse endlessly.
+ *
+ * @author James Hamilton
+ */
+public class ParallelDirectoryWalker
+extends      RecursiveTask<List<File>>
+{
+    private final File       directory;
+    private final FileFilter fileFilter;
+
+
+    public ParallelDirectoryWalker(File directory, FileFilter fileFilter)
+    {
+        this.directory  = directory;
+        this.fileFilter = fileFilter;
+    }
+
+
+    // Implementations for RecursiveTask.
+
+    @Override
+    protected List<File> compute()
+    {
+        List<File> files = new ArrayList<>();
+
+        File[] children = directory.listFiles();
+        if (children == null)
+        {
+            return files;
+        }
+
+        List<ParallelDirectoryWalker> subdirectoryWalkers = new ArrayList<>();
+        for (File child : children)
+        {
+            Path path = child.toPath();
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS))
+            {
+                ParallelDirectoryWalker subdirectoryWalker = new ParallelDirectoryWalker(child, fileFilter);
+                subdirectoryWalker.fork();
+                subdirectoryWalkers.add(subdirectoryWalker);
+            }
+            else if (!Files.isDirectory(path) && fileFilter.accept(child))
+            {
+                files.add(child);
+            }
+        }
+
+        for (ParallelDirectoryWalker subdirectoryWalker : subdirectoryWalkers)
+        {
+            files.addAll(subdirectoryWalker.join());
+        }
+
+        Collections.sort(files);
+
+        return files;
+    }
+}
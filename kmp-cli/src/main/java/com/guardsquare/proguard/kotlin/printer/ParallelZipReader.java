@@ -0,0 +1,280 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.visitor.ClassVisitor;
+import proguard.io.DataEntry;
+import proguard.io.DataEntryReader;
+import proguard.io.FileDataEntry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * This class reads the entries of a zip file in parallel. It looks up the
+ * entries in the central directory of the zip file, so the workers can
+ * inflate and parse them independently.
+ * <p>
+ * Each worker gets its own data entry reader from the given factory, which
+ * passes the classes that it reads to the given class visitor. The classes
+ * are collected per entry and then passed on to the final class visitor, one
+ * entry at a time and in the order of the zip file. The final class visitor,
+ * like a class pool filler, therefore doesn't have to be thread-safe, and
+ * the result doesn't depend on the scheduling of the workers.
+ * <p>
+ * The workers pick up the largest entries first, so a few large entries,
+ * like the dex files of a multi-dex apk, each get their own worker early on,
+ * instead of ending up in the same worker at the end.
+ *
+ * @author James Hamilton
+ */
+public class ParallelZipReader
+{
+    private final ExecutorService        executor;
+    private final int                    threadCount;
+    private final DataEntryReaderFactory dataEntryReaderFactory;
+
+
+    /**
+     * Creates a new ParallelZipReader.
+     * @param executor               the executor that runs the additional workers.
+     * @param threadCount            the total number of workers, including the
+     *                               calling thread.
+     * @param dataEntryReaderFactory the factory for the data entry reader of
+     *                               each worker.
+     */
+    public ParallelZipReader(ExecutorService        executor,
+                             int                    threadCount,
+                             DataEntryReaderFactory dataEntryReaderFactory)
+    {
+        this.executor               = executor;
+        this.threadCount            = threadCount;
+        this.dataEntryReaderFactory = dataEntryReaderFactory;
+    }
+
+
+    /**
+     * Reads the entries of the given zip file and lets the given class
+     * visitor visit the classes that they contain.
+     */
+    public void read(File file, ClassVisitor classVisitor) throws IOException
+    {
+        try (ZipFile zipFile = new ZipFile(file))
+        {
+            DataEntry      parent  = new FileDataEntry(file.getParentFile(), file);
+            List<ZipEntry> entries = new ArrayList<>(zipFile.size());
+            for (ZipEntry entry : Collections.list(zipFile.entries()))
+            {
+                if (!entry.isDirectory())
+                {
+                    entries.add(entry);
+                }
+            }
+
+            int[] schedule = largestFirst(entries);
+
+            AtomicInteger              nextIndex  = new AtomicInteger();
+            CountDownLatch             remaining  = new CountDownLatch(entries.size());
+            AtomicReference<Throwable> failure    = new AtomicReference<>();
+            OrderedCompletion          completion = new OrderedCompletion(entries.size(), classVisitor, failure);
+
+            Runnable worker = () -> {
+                ClassCollector  classCollector  = null;
+                DataEntryReader dataEntryReader = null;
+                for (int next = nextIndex.getAndIncrement(); next < schedule.length; next = nextIndex.getAndIncrement())
+                {
+                    int         index   = schedule[next];
+                    List<Clazz> classes = Collections.emptyList();
+                    try
+                    {
+                        if (failure.get() == null)
+                        {
+                            if (dataEntryReader == null)
+                            {
+                                classCollector  = new ClassCollector();
+                                dataEntryReader = dataEntryReaderFactory.createDataEntryReader(classCollector);
+                            }
+
+                            ZipEntry entry = entries.get(index);
+                            byte[]   bytes;
+                            try (InputStream inputStream = zipFile.getInputStream(entry))
+                            {
+                                bytes = ByteArrayDataEntry.readBytes(inputStream, entry.getSize());
+                            }
+
+                            classCollector.classes = new ArrayList<>();
+                            dataEntryReader.read(new ByteArrayDataEntry(parent, entry.getName(), bytes));
+                            classes = classCollector.classes;
+                        }
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.compareAndSet(null, e);
+                    }
+                    finally
+                    {
+                        completion.complete(index, classes);
+                        remaining.countDown();
+                    }
+                }
+            };
+
+            for (int thread = 1; thread < threadCount; thread++)
+            {
+                executor.execute(worker);
+            }
+            worker.run();
+
+            try
+            {
+                remaining.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading [" + file + "]", e);
+            }
+
+            Throwable throwable = failure.get();
+            if (throwable != null)
+            {
+                throw throwable instanceof IOException ?
+                    (IOException)throwable :
+                    new IOException("Can't read [" + file + "] (" + throwable.getMessage() + ")", throwable);
+            }
+        }
+    }
+
+
+    /**
+     * Returns the indices of the given entries, ordered from the largest
+     * entry to the smallest entry, with entries of unknown size last.
+     */
+    private static int[] largestFirst(List<ZipEntry> entries)
+    {
+        List<Integer> indices = new ArrayList<>(entries.size());
+        for (int index = 0; index < entries.size(); index++)
+        {
+            indices.add(index);
+        }
+
+        indices.sort((index1, index2) -> Long.compare(entries.get(index2).getSize(),
+                                                      entries.get(index1).getSize()));
+
+        int[] schedule = new int[indices.size()];
+        for (int index = 0; index < schedule.length; index++)
+        {
+            schedule[index] = indices.get(index);
+        }
+
+        return schedule;
+    }
+
+
+    /**
+     * Collects the classes that it visits.
+     */
+    private static class ClassCollector
+    implements           ClassVisitor
+    {
+        private List<Clazz> classes;
+
+
+        // Implementations for ClassVisitor.
+
+        @Override
+        public void visitAnyClass(Clazz clazz)
+        {
+            classes.add(clazz);
+        }
+    }
+
+
+    /**
+     * Tracks the entries that the workers have completed, and lets the
+     * class visitor visit their classes as soon as all preceding entries
+     * have been completed as well.
+     */
+    private static class OrderedCompletion
+    {
+        private final ClassVisitor               classVisitor;
+        private final AtomicReference<Throwable> failure;
+        private final List<List<Clazz>>          completed;
+        private       int                        nextIndex;
+
+
+        private OrderedCompletion(int entryCount, ClassVisitor classVisitor, AtomicReference<Throwable> failure)
+        {
+            this.classVisitor = classVisitor;
+            this.failure      = failure;
+            this.completed    = new ArrayList<>(Collections.<List<Clazz>>nCopies(entryCount, null));
+        }
+
+
+        private synchronized void complete(int index, List<Clazz> classes)
+        {
+            completed.set(index, classes);
+            while (nextIndex < completed.size() && completed.get(nextIndex) != null)
+            {
+                try
+                {
+                    if (failure.get() == null)
+                    {
+                        for (Clazz clazz : completed.get(nextIndex))
+                        {
+                            clazz.accept(classVisitor);
+                        }
+                    }
+                }
+                catch (Throwable e)
+                {
+                    failure.compareAndSet(null, e);
+                }
+
+                // Release the classes of the entry.
+                completed.set(nextIndex, Collections.<Clazz>emptyList());
+                nextIndex++;
+            }
+        }
+    }
+
+
+    /**
+     * Creates a data entry reader for each worker.
+     */
+    public interface DataEntryReaderFactory
+    {
+        /**
+         * Creates a data entry reader that passes the classes that it reads
+         * to the given class visitor.
+         */
+        DataEntryReader createDataEntryReader(ClassVisitor classVisitor);
+    }
+}
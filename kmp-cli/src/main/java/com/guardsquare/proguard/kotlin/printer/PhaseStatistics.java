@@ -0,0 +1,468 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import proguard.classfile.visitor.ClassVisitor;
+import proguard.io.DataEntryReader;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class measures the phases of a run: their wall time, their CPU time,
+ * the bytes that they allocate, their throughput in classes per second, and
+ * the bytes that they write.
+ * <p>
+ * Phases run one after the other, but they may use several threads, so the
+ * CPU time is the CPU time of the whole process, and the allocated bytes are
+ * those of all live threads. Work that is interleaved with other work, like
+ * the conversion of dex files, is measured with timers instead, which
+ * accumulate the measurements of the threads that run the work.
+ * <p>
+ * The CPU time and the allocated bytes are only available on JVMs that
+ * support them, and are reported as -1 otherwise. Runs that execute
+ * concurrently with other runs in the same process use
+ * {@link #concurrent(LongSupplier)}, whose phases report them as -1 as well,
+ * since the process-wide numbers would include those of the other runs.
+ * Their timers still measure the threads that run their own work.
+ * <p>
+ * Runs that don't collect statistics use {@link #disabled()}, which doesn't
+ * enable the allocation accounting of the JVM or sample anything.
+ *
+ * @author James Hamilton
+ */
+public class PhaseStatistics
+{
+    private final ThreadMXBean                             threadMXBean     = ManagementFactory.getThreadMXBean();
+    private final com.sun.management.ThreadMXBean          allocationMXBean = threadMXBean instanceof com.sun.management.ThreadMXBean ?
+                                                                              (com.sun.management.ThreadMXBean)threadMXBean : null;
+    private final com.sun.management.OperatingSystemMXBean cpuMXBean;
+    private final LongSupplier                             bytesWritten;
+    private final boolean                                  enabled;
+    private final boolean                                  processWide;
+    private final Phase                                    total;
+    private final List<Phase>                              phases           = new ArrayList<>();
+    private final List<Timer>                              timers           = new ArrayList<>();
+
+
+    /**
+     * Creates a new PhaseStatistics and starts measuring the total run.
+     * @param bytesWritten the supplier of the number of bytes written so far.
+     */
+    public PhaseStatistics(LongSupplier bytesWritten)
+    {
+        this(bytesWritten, true, true);
+    }
+
+
+    private PhaseStatistics(LongSupplier bytesWritten, boolean enabled, boolean processWide)
+    {
+        OperatingSystemMXBean operatingSystemMXBean = ManagementFactory.getOperatingSystemMXBean();
+
+        this.cpuMXBean    = operatingSystemMXBean instanceof com.sun.management.OperatingSystemMXBean ?
+                            (com.sun.management.OperatingSystemMXBean)operatingSystemMXBean : null;
+        this.bytesWritten = bytesWritten;
+        this.enabled      = enabled;
+        this.processWide  = processWide;
+
+        if (enabled                  &&
+            allocationMXBean != null &&
+            allocationMXBean.isThreadAllocatedMemorySupported())
+        {
+            allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+        }
+
+        this.total = new Phase("total");
+    }
+
+
+    /**
+     * Returns statistics that don't measure anything, for runs that don't
+     * report them.
+     */
+    public static PhaseStatistics disabled()
+    {
+        return new PhaseStatistics(() -> 0L, false, false);
+    }
+
+
+    /**
+     * Returns statistics for a run that executes concurrently with other
+     * runs, which don't measure the CPU time and allocated bytes of the
+     * whole process in their phases.
+     * @param bytesWritten the supplier of the number of bytes written so far.
+     */
+    public static PhaseStatistics concurrent(LongSupplier bytesWritten)
+    {
+        return new PhaseStatistics(bytesWritten, true, false);
+    }
+
+
+    /**
+     * Starts measuring a new phase.
+     */
+    public Phase startPhase(String name)
+    {
+        Phase phase = new Phase(name);
+        phases.add(phase);
+        return phase;
+    }
+
+
+    /**
+     * Creates a new timer for work that is interleaved with other work.
+     */
+    public Timer timer(String name)
+    {
+        Timer timer = new Timer(name);
+        timers.add(timer);
+        return timer;
+    }
+
+
+    /**
+     * Stops measuring the total run.
+     * @param classCount the number of classes processed in the run.
+     */
+    public void finish(int classCount)
+    {
+        total.stop(classCount);
+    }
+
+
+    /**
+     * Prints a human-readable report to the given stream.
+     */
+    public void printReport(PrintStream printStream)
+    {
+        String format = "%-32s %10s %10s %14s %10s %12s %14s%n";
+
+        printStream.printf(format, "Phase", "Wall (ms)", "CPU (ms)", "Allocated (KB)", "Classes", "Classes/s", "Written (KB)");
+        for (Phase phase : phases)
+        {
+            phase.print(printStream, format);
+        }
+        total.print(printStream, format);
+
+        if (!timers.isEmpty())
+        {
+            printStream.println();
+            printStream.printf(format, "Accumulated", "Wall (ms)", "CPU (ms)", "Allocated (KB)", "Count", "", "");
+            for (Timer timer : timers)
+            {
+                timer.print(printStream, format);
+            }
+        }
+    }
+
+
+    /**
+     * Returns a machine-readable report.
+     */
+    public JSONObject toJson()
+    {
+        JSONArray phasesArray = new JSONArray();
+        for (Phase phase : phases)
+        {
+            phasesArray.put(phase.toJson());
+        }
+
+        JSONArray timersArray = new JSONArray();
+        for (Timer timer : timers)
+        {
+            timersArray.put(timer.toJson());
+        }
+
+        return new JSONObject()
+            .put("phases", phasesArray)
+            .put("timers", timersArray)
+            .put("total",  total.toJson());
+    }
+
+
+    // Small utility methods.
+
+    private long processCpuTime()
+    {
+        return cpuMXBean == null || !processWide ? -1L : cpuMXBean.getProcessCpuTime();
+    }
+
+
+    private long allocatedBytes()
+    {
+        if (allocationMXBean == null ||
+            !processWide             ||
+            !allocationMXBean.isThreadAllocatedMemoryEnabled())
+        {
+            return -1L;
+        }
+
+        long allocatedBytes = 0L;
+        for (long threadAllocatedBytes : allocationMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds()))
+        {
+            if (threadAllocatedBytes > 0L)
+            {
+                allocatedBytes += threadAllocatedBytes;
+            }
+        }
+
+        return allocatedBytes;
+    }
+
+
+    private long currentThreadCpuTime()
+    {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ?
+            threadMXBean.getCurrentThreadCpuTime() :
+            -1L;
+    }
+
+
+    private long currentThreadAllocatedBytes()
+    {
+        return allocationMXBean != null && allocationMXBean.isThreadAllocatedMemoryEnabled() ?
+            allocationMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()) :
+            -1L;
+    }
+
+
+    private static long difference(long start, long end)
+    {
+        return start < 0L || end < 0L ? -1L : end - start;
+    }
+
+
+    private static void addIfKnown(LongAdder adder, long value)
+    {
+        if (value >= 0L)
+        {
+            adder.add(value);
+        }
+    }
+
+
+    private static String milliseconds(long nanoseconds)
+    {
+        return nanoseconds < 0L ? "-" : String.format("%.1f", nanoseconds / 1e6);
+    }
+
+
+    private static String kilobytes(long bytes)
+    {
+        return bytes < 0L ? "-" : Long.toString(bytes / 1024L);
+    }
+
+
+    /**
+     * A phase of the run, measured from its start until it is stopped.
+     */
+    public class Phase
+    {
+        private final String name;
+        private final long   startWallTime;
+        private final long   startCpuTime;
+        private final long   startAllocatedBytes;
+        private final long   startBytesWritten;
+
+        private long wallTime;
+        private long cpuTime;
+        private long allocatedBytes;
+        private long writtenBytes;
+        private int  classCount;
+
+
+        private Phase(String name)
+        {
+            this.name                = name;
+            this.startCpuTime        = enabled ? processCpuTime()         : -1L;
+            this.startAllocatedBytes = enabled ? allocatedBytes()         : -1L;
+            this.startBytesWritten   = enabled ? bytesWritten.getAsLong() : 0L;
+            this.startWallTime       = enabled ? System.nanoTime()        : 0L;
+        }
+
+
+        /**
+         * Stops measuring this phase.
+         * @param classCount the number of classes processed in this phase.
+         */
+        public void stop(int classCount)
+        {
+            if (!enabled)
+            {
+                return;
+            }
+
+            this.wallTime       = System.nanoTime() - startWallTime;
+            this.cpuTime        = difference(startCpuTime,        processCpuTime());
+            this.allocatedBytes = difference(startAllocatedBytes, allocatedBytes());
+            this.writtenBytes   = bytesWritten.getAsLong() - startBytesWritten;
+            this.classCount     = classCount;
+        }
+
+
+        private double classesPerSecond()
+        {
+            return wallTime > 0L ? classCount * 1e9 / wallTime : 0.0;
+        }
+
+
+        private void print(PrintStream printStream, String format)
+        {
+            printStream.printf(format,
+                               name,
+                               milliseconds(wallTime),
+                               milliseconds(cpuTime),
+                               kilobytes(allocatedBytes),
+                               classCount,
+                               String.format("%.0f", classesPerSecond()),
+                               kilobytes(writtenBytes));
+        }
+
+
+        private JSONObject toJson()
+        {
+            return new JSONObject()
+                .put("name",             name)
+                .put("wallTimeNanos",    wallTime)
+                .put("cpuTimeNanos",     cpuTime)
+                .put("allocatedBytes",   allocatedBytes)
+                .put("classes",          classCount)
+                .put("classesPerSecond", classesPerSecond())
+                .put("bytesWritten",     writtenBytes);
+        }
+    }
+
+
+    /**
+     * A timer that accumulates the measurements of work that is interleaved
+     * with other work, possibly in several threads. It measures the wall
+     * time, CPU time, and allocated bytes of the threads that run the work.
+     */
+    public class Timer
+    {
+        private final String    name;
+        private final LongAdder count          = new LongAdder();
+        private final LongAdder wallTime       = new LongAdder();
+        private final LongAdder cpuTime        = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+
+
+        private Timer(String name)
+        {
+            this.name = name;
+        }
+
+
+        /**
+         * Returns a data entry reader that times the given data entry reader.
+         */
+        public DataEntryReader timed(DataEntryReader dataEntryReader)
+        {
+            if (!enabled)
+            {
+                return dataEntryReader;
+            }
+
+            return dataEntry -> {
+                long[] start = start();
+                try
+                {
+                    dataEntryReader.read(dataEntry);
+                }
+                finally
+                {
+                    stop(start);
+                }
+            };
+        }
+
+
+        /**
+         * Returns a class visitor that times the given class visitor.
+         */
+        public ClassVisitor timed(ClassVisitor classVisitor)
+        {
+            if (!enabled)
+            {
+                return classVisitor;
+            }
+
+            return clazz -> {
+                long[] start = start();
+                try
+                {
+                    clazz.accept(classVisitor);
+                }
+                finally
+                {
+                    stop(start);
+                }
+            };
+        }
+
+
+        private long[] start()
+        {
+            return new long[] { currentThreadCpuTime(), currentThreadAllocatedBytes(), System.nanoTime() };
+        }
+
+
+        private void stop(long[] start)
+        {
+            long wallTimeEnd = System.nanoTime();
+
+            count.increment();
+            wallTime.add(wallTimeEnd - start[2]);
+            addIfKnown(cpuTime,        difference(start[0], currentThreadCpuTime()));
+            addIfKnown(allocatedBytes, difference(start[1], currentThreadAllocatedBytes()));
+        }
+
+
+        private void print(PrintStream printStream, String format)
+        {
+            printStream.printf(format,
+                               name,
+                               milliseconds(wallTime.sum()),
+                               milliseconds(cpuTime.sum()),
+                               kilobytes(allocatedBytes.sum()),
+                               count.sum(),
+                               "",
+                               "");
+        }
+
+
+        private JSONObject toJson()
+        {
+            return new JSONObject()
+                .put("name",           name)
+                .put("count",          count.sum())
+                .put("wallTimeNanos",  wallTime.sum())
+                .put("cpuTimeNanos",   cpuTime.sum())
+                .put("allocatedBytes", allocatedBytes.sum());
+        }
+    }
+}
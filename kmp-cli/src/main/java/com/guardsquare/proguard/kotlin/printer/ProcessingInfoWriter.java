@@ -0,0 +1,67 @@
+/*
+ * Kotlin metadata printer -- tool to display the Kotlin metadata
+ * from Java class files.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.classfile.Clazz;
+import proguard.classfile.visitor.ClassVisitor;
+
+import java.io.PrintWriter;
+
+/**
+ * This {@link ClassVisitor} writes the printed Kotlin metadata from the
+ * processing info of the classes that it visits to the given writer, with
+ * the given divider in between. It then clears the processing info, so the
+ * printed metadata can be garbage collected right away.
+ *
+ * @author James Hamilton
+ */
+public class ProcessingInfoWriter
+implements   ClassVisitor
+{
+    private final PrintWriter printWriter;
+    private final String      divider;
+    private       boolean     first = true;
+
+
+    public ProcessingInfoWriter(PrintWriter printWriter, String divider)
+    {
+        this.printWriter = printWriter;
+        this.divider     = divider;
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz)
+    {
+        Object processingInfo = clazz.getProcessingInfo();
+        if (processingInfo != null)
+        {
+            if (!first)
+            {
+                printWriter.println(divider);
+            }
+            first = false;
+
+            printWriter.print((String)processingInfo);
+            clazz.setProcessingInfo(null);
+        }
+    }
+}
@@ -9,6 +9,7 @@ package com.guardsquare.proguard.kotlin.printer;
 import com.guardsquare.proguard.kotlin.printer.internal.AnnotationPrinter;
 import com.guardsquare.proguard.kotlin.printer.internal.Context;
 import com.guardsquare.proguard.kotlin.printer.internal.ContextFrame;
+import com.guardsquare.proguard.kotlin.printer.internal.InnerClassIndex;
 import com.guardsquare.proguard.kotlin.printer.internal.KotlinAnnotationPrinter;
 import com.guardsquare.proguard.kotlin.printer.internal.visitor.ConstantToStringVisitor;
 import com.guardsquare.proguard.kotlin.printer.internal.visitor.KotlinClassTypeParameterVisitor;
@@ -17,7 +18,6 @@ import com.guardsquare.proguard.kotlin.printer.internal.visitor.KotlinTypeParame
 import proguard.classfile.ClassPool;
 import proguard.classfile.Clazz;
 import proguard.classfile.Method;
-import proguard.classfile.TypeConstants;
 import proguard.classfile.attribute.annotation.Annotation;
 import proguard.classfile.attribute.annotation.visitor.AllAnnotationVisitor;
 import proguard.classfile.attribute.annotation.visitor.AnnotationTypeFilter;
@@ -25,17 +25,6 @@ import proguard.classfile.attribute.annotation.visitor.AnnotationVisitor;
 import proguard.classfile.attribute.visitor.AllAttributeVisitor;
 import proguard.classfile.attribute.visitor.AttributeConstantVisitor;
 import proguard.classfile.kotlin.*;
-import proguard.classfile.kotlin.flags.KotlinClassFlags;
-import proguard.classfile.kotlin.flags.KotlinEffectExpressionFlags;
-import proguard.classfile.kotlin.flags.KotlinFunctionFlags;
-import proguard.classfile.kotlin.flags.KotlinModalityFlags;
-import proguard.classfile.kotlin.flags.KotlinPropertyAccessorMetadata;
-import proguard.classfile.kotlin.flags.KotlinPropertyFlags;
-import proguard.classfile.kotlin.flags.KotlinTypeFlags;
-import proguard.classfile.kotlin.flags.KotlinTypeParameterFlags;
-import proguard.classfile.kotlin.flags.KotlinValueParameterFlags;
-import proguard.classfile.kotlin.flags.KotlinVisibilityFlags;
-import proguard.classfile.kotlin.visitor.AllKotlinAnnotationArgumentVisitor;
 import proguard.classfile.kotlin.visitor.AllTypeParameterVisitor;
 import proguard.classfile.kotlin.visitor.KotlinClassToAnonymousObjectOriginClassVisitor;
 import proguard.classfile.kotlin.visitor.KotlinClassToInlineOriginFunctionVisitor;
@@ -50,11 +39,8 @@ import proguard.classfile.kotlin.visitor.KotlinValueParameterVisitor;
 import proguard.classfile.kotlin.visitor.KotlinVersionRequirementVisitor;
 import proguard.classfile.kotlin.visitor.MultiKotlinMetadataVisitor;
 import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor;
-import proguard.classfile.kotlin.visitor.filter.KotlinAnnotationArgumentFilter;
-import proguard.classfile.kotlin.visitor.filter.KotlinAnnotationFilter;
 import proguard.classfile.kotlin.visitor.filter.KotlinConstructorFilter;
 import proguard.classfile.kotlin.visitor.filter.KotlinMetadataFilter;
-import proguard.classfile.kotlin.visitor.filter.KotlinPropertyFilter;
 import proguard.classfile.kotlin.visitor.filter.KotlinTypeFilter;
 import proguard.classfile.util.ClassUtil;
 import proguard.classfile.visitor.ClassCounter;
@@ -64,13 +50,17 @@ import proguard.classfile.visitor.MultiClassVisitor;
 import proguard.classfile.visitor.MultiMemberVisitor;
 import com.guardsquare.proguard.kotlin.printer.internal.visitor.KotlinTypeVisitorWrapper;
 
-import java.util.Stack;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.classFlags;
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.functionFlags;
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.propertyAccessorFlags;
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.propertyFlags;
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.typeFlags;
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.typeParameterFlags;
+import static com.guardsquare.proguard.kotlin.printer.internal.FlagPrinter.valueParameterFlags;
 import static java.lang.System.lineSeparator;
 import static java.util.Objects.requireNonNull;
 import static proguard.classfile.kotlin.KotlinTypeVariance.INVARIANT;
@@ -87,27 +77,57 @@ public class KotlinMetadataPrinter
 implements   KotlinMetadataVisitor
 {
     private static final String  INDENTATION         = "    ";
-    private static final Pattern FUNCTION_TYPE_REGEX = Pattern.compile("^kotlin/Function(?<paramCount>\\d+)$");
     private static final int MAX_ENUM_ENTRY_PER_LINE = 5;
 
-    private final ClassPool programClassPool;
+    // The output buffer is kept across classes, unless it has grown beyond this capacity.
+    private static final int INITIAL_BUFFER_CAPACITY      = 1024;
+    private static final int MAX_RETAINED_BUFFER_CAPACITY = 1024 * 1024;
 
-    private final Stack<StringBuilder>          stringBuilders = new Stack<>();
+    private ClassPool programClassPool;
+
+    // A single output buffer, with a stack of marks at the start of the
+    // nested string builders, so nested output doesn't need to be copied.
+    private       StringBuilder                 buffer         = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+    private       int[]                         marks          = new int[16];
+    private       int                           markCount;
     private final MyKotlinSourceMetadataPrinter printer        = new MyKotlinSourceMetadataPrinter();
     private       int                           indentation;
     private Context context;
     private final boolean excludeEmbedded;
     private final ClassPool visitedNestedClassPool = new ClassPool();
+    private InnerClassIndex innerClassIndex;
 
     public KotlinMetadataPrinter(ClassPool programClassPool)
     {
         this(programClassPool, true);
     }
 
+    /**
+     * Creates a new KotlinMetadataPrinter.
+     * <p>
+     * The printer indexes the inner classes of the program class pool when it
+     * first needs them, so the class pool should be complete by then. After
+     * changing the class pool, call {@link #reset(ClassPool)}, which drops
+     * the index, so the printer indexes the class pool again.
+     * @param programClassPool the class pool with the classes to print.
+     * @param excludeEmbedded  specifies whether to only print synthetic
+     *                         classes and multi-file class parts within their
+     *                         outer classes and facades.
+     */
     public KotlinMetadataPrinter(ClassPool programClassPool, boolean excludeEmbedded)
+    {
+        this(programClassPool, excludeEmbedded, null);
+    }
+
+    /**
+     * Creates a printer that uses the given index of the inner classes of the
+     * program class pool, which may be shared, or null to create it lazily.
+     */
+    KotlinMetadataPrinter(ClassPool programClassPool, boolean excludeEmbedded, InnerClassIndex innerClassIndex)
     {
         this.programClassPool = programClassPool;
-        this.excludeEmbedded = excludeEmbedded;
+        this.excludeEmbedded  = excludeEmbedded;
+        this.innerClassIndex  = innerClassIndex;
     }
 
 
@@ -144,6 +164,18 @@ implements   KotlinMetadataVisitor
         {
             clazz.setProcessingInfo(null);
         }
+
+        if (markCount == 0)
+        {
+            // The nested classes are only tracked while printing their outer class.
+            visitedNestedClassPool.clear();
+
+            // Keep the buffer for the next class, unless it has become very large.
+            if (buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY)
+            {
+                buffer = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+            }
+        }
     }
 
     public Context getContext()
@@ -152,6 +184,44 @@ implements   KotlinMetadataVisitor
     }
 
 
+    /**
+     * Clears all printing state, so the printer can be reused, even after
+     * printing a class has failed halfway. The output buffer is kept, unless
+     * it has become very large.
+     */
+    public void reset()
+    {
+        markCount   = 0;
+        indentation = 0;
+        buffer.setLength(0);
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY)
+        {
+            buffer = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+        }
+
+        if (context != null)
+        {
+            context.clear();
+        }
+        visitedNestedClassPool.clear();
+    }
+
+
+    /**
+     * Clears all printing state, like {@link #reset()}, and lets the printer
+     * print the classes of the given program class pool from now on. The
+     * index of the inner classes is always dropped, even for the same class
+     * pool, since its classes may have changed in the meantime.
+     */
+    public void reset(ClassPool programClassPool)
+    {
+        reset();
+
+        this.programClassPool = programClassPool;
+        this.innerClassIndex  = null;
+    }
+
+
     /**
      * The main printer class implements all the Kotlin visitors, each
      * printing their repesective part.
@@ -167,6 +237,9 @@ implements   KotlinMetadataVisitor
                   KotlinPropertyVisitor,
                   KotlinVersionRequirementVisitor
     {
+        private final KotlinAnnotationPrinter typeAnnotationPrinter = new KotlinAnnotationPrinter(KotlinMetadataPrinter.this);
+        private final TypeArgumentPrinter     typeArgumentPrinter   = new TypeArgumentPrinter();
+
 
         // Implementations for KotlinMetadataVisitor
 
@@ -265,10 +338,14 @@ implements   KotlinMetadataVisitor
                 new KotlinConstructorFilter(
                     constructor -> !constructor.flags.isSecondary && !constructor.isParameterless(),
                     MyKotlinSourceMetadataPrinter.this));
-            String primaryConstructorString = popStringBuilder();
+            boolean hasPrimaryConstructorString = stringBuilderLength() > 0;
+            mergeStringBuilder();
 
             // Print an extra space if there was no constructor string generated.
-            print(primaryConstructorString.length() == 0 ? " " : primaryConstructorString);
+            if (!hasPrimaryConstructorString)
+            {
+                print(" ");
+            }
 
             kotlinClassKindMetadata.superTypesAccept(clazz,
                 new KotlinTypeFilter(
@@ -313,10 +390,9 @@ implements   KotlinMetadataVisitor
             if (kotlinClassKindMetadata.flags.isValue)
             {
                 println("// Underlying property name: " + kotlinClassKindMetadata.underlyingPropertyName, true);
-                pushStringBuilder();
+                print("// Underlying property type: ", true);
                 kotlinClassKindMetadata.inlineClassUnderlyingPropertyTypeAccept(clazz, MyKotlinSourceMetadataPrinter.this);
-                String underlyingPropertyType = popStringBuilder();
-                println("// Underlying property type: " + underlyingPropertyType, true);
+                println();
             }
 
             printMembers(clazz, kotlinClassKindMetadata);
@@ -590,7 +666,7 @@ implements   KotlinMetadataVisitor
             printValueParameter(ValueParameterType.NORMAL, kotlinValueParameterMetadata);
             pushStringBuilder();
             kotlinValueParameterMetadata.typeAccept(clazz, kotlinDeclarationContainerMetadata, kotlinPropertyMetadata, this);
-            print(popStringBuilder());
+            mergeStringBuilder();
             if (kotlinValueParameterMetadata.flags.hasDefaultValue)
             {
                 print(" = /* default value */");
@@ -607,7 +683,7 @@ implements   KotlinMetadataVisitor
             printValueParameter(ValueParameterType.NORMAL, kotlinValueParameterMetadata);
             pushStringBuilder();
             kotlinValueParameterMetadata.typeAccept(clazz, kotlinMetadata, kotlinFunctionMetadata, this);
-            print(popStringBuilder());
+            mergeStringBuilder();
             if (kotlinValueParameterMetadata.flags.hasDefaultValue)
             {
                 print(" = /* default value */");
@@ -621,16 +697,19 @@ implements   KotlinMetadataVisitor
                                                  KotlinConstructorMetadata    kotlinConstructorMetadata,
                                                  KotlinValueParameterMetadata kotlinValueParameterMetadata)
         {
-            ConstructorValParameterTypeChecker valueParameterTypeChecker = new ConstructorValParameterTypeChecker();
-            kotlinClassKindMetadata.propertiesAccept(clazz,
-                new KotlinPropertyFilter(property -> property.name.equals(kotlinValueParameterMetadata.parameterName),
-                                         valueParameterTypeChecker));
+            // The frame of the class indexes its properties by name.
+            ContextFrame contextFrame = context.current();
+            if (contextFrame.kotlinMetadata != kotlinClassKindMetadata)
+            {
+                contextFrame = new ContextFrame(clazz, kotlinClassKindMetadata);
+            }
+            KotlinPropertyMetadata kotlinPropertyMetadata = contextFrame.property(kotlinValueParameterMetadata.parameterName);
 
-            printValueParameter(valueParameterTypeChecker.valueParameterType, kotlinValueParameterMetadata);
+            printValueParameter(valueParameterType(kotlinPropertyMetadata), kotlinValueParameterMetadata);
             pushStringBuilder();
             // typeAccept calls both normal type accept and then varArg type accept, for varArgs.
             kotlinValueParameterMetadata.typeAccept(clazz, kotlinClassKindMetadata, kotlinConstructorMetadata, this);
-            print(popStringBuilder());
+            mergeStringBuilder();
             if (kotlinValueParameterMetadata.flags.hasDefaultValue)
             {
                 print(" = /* default value */");
@@ -832,35 +911,60 @@ implements   KotlinMetadataVisitor
 
         // Implementations for KotlinTypeVisitor
 
+        // Types are printed a lot, so this method avoids allocating anything
+        // but the printed output: it iterates over the annotations directly,
+        // and prints the type arguments with a reusable visitor.
         @Override
         public void visitAnyType(Clazz clazz, KotlinTypeMetadata kotlinTypeMetadata)
         {
-            AtomicBoolean isExtensionFunctionType = new AtomicBoolean(false);
-            AtomicReference<String> parameterName = new AtomicReference<>("");
-
-            kotlinTypeMetadata.annotationsAccept(clazz,
-                // ExtensionFunctionTypes are marked by an annotation.
-                new KotlinAnnotationFilter(annotation -> annotation.className.equals(KotlinConstants.NAME_KOTLIN_EXTENSION_FUNCTION),
-                    (clazz1, annotatable, annotation) -> isExtensionFunctionType.set(true),
-                // A function type can optionally include names for the function parameters (for documentation purposes).
-                new KotlinAnnotationFilter(annotation -> annotation.className.equals(KotlinConstants.NAME_KOTLIN_PARAMETER_NAME),
-                    new AllKotlinAnnotationArgumentVisitor(
-                    new KotlinAnnotationArgumentFilter(argument -> argument.name.equals("name"),
-                        ((clazz1, annotatable, annotation, argument, value) -> parameterName.set(value.toString()))
-                    )),
-                // Else print the annotation.
-                new KotlinAnnotationPrinter(KotlinMetadataPrinter.this))));
+            boolean isExtensionFunctionType = false;
+            String  parameterName           = null;
+
+            List<KotlinAnnotation> annotations = kotlinTypeMetadata.annotations;
+            for (int index = 0; index < annotations.size(); index++)
+            {
+                KotlinAnnotation annotation = annotations.get(index);
+                if (annotation.className.equals(KotlinConstants.NAME_KOTLIN_EXTENSION_FUNCTION))
+                {
+                    // ExtensionFunctionTypes are marked by an annotation.
+                    isExtensionFunctionType = true;
+                }
+                else if (annotation.className.equals(KotlinConstants.NAME_KOTLIN_PARAMETER_NAME))
+                {
+                    // A function type can optionally include names for the function parameters (for documentation purposes).
+                    List<KotlinAnnotationArgument> arguments = annotation.arguments;
+                    for (int argumentIndex = 0; argumentIndex < arguments.size(); argumentIndex++)
+                    {
+                        KotlinAnnotationArgument argument = arguments.get(argumentIndex);
+                        if (argument.name.equals("name"))
+                        {
+                            parameterName = argument.value.toString();
+                        }
+                    }
+                }
+                else
+                {
+                    // Else print the annotation.
+                    typeAnnotationPrinter.visitTypeAnnotation(clazz, kotlinTypeMetadata, annotation);
+                }
+            }
 
             print(typeFlags(kotlinTypeMetadata.flags));
 
-            if (parameterName.get().length() > 0)
+            if (parameterName != null && parameterName.length() > 0)
             {
-                print(parameterName + ": ");
+                print(parameterName);
+                print(": ");
             }
 
-            if (kotlinTypeMetadata.variance != null && !kotlinTypeMetadata.variance.equals(INVARIANT))
+            if (kotlinTypeMetadata.variance != null)
             {
-                print(kotlinTypeMetadata.variance.toString().toLowerCase() + " ");
+                switch (kotlinTypeMetadata.variance)
+                {
+                    case IN:  print("in ");  break;
+                    case OUT: print("out "); break;
+                    default:                 break;
+                }
             }
 
             if (kotlinTypeMetadata.className != null && kotlinTypeMetadata.className.startsWith(KotlinConstants.NAME_KOTLIN_FUNCTION))
@@ -870,8 +974,6 @@ implements   KotlinMetadataVisitor
                 //    Function0<R> = () -> R
                 //    Function2<A, B, R> = (A, B) -> R
                 //    @ExtensionFunctionType Function3<T, A, B, R> = T.(A, B) -> R
-                Matcher matcher    = FUNCTION_TYPE_REGEX.matcher(kotlinTypeMetadata.className);
-                int     paramCount = matcher.matches() ? Integer.parseInt(matcher.group("paramCount")) : 0;
 
                 // Nullable function types must be wrapped in ()
                 if (kotlinTypeMetadata.flags.isNullable)
@@ -879,29 +981,11 @@ implements   KotlinMetadataVisitor
                     print("(");
                 }
 
-                kotlinTypeMetadata.typeArgumentsAccept(clazz,
-                    new KotlinTypeVisitorWrapper(
-                    (i, _kotlinTypeMetadata) -> {
-                        if (i == 0 && !isExtensionFunctionType.get())
-                        {
-                            print("(");
-                        }
-                        else if (i == 1 && isExtensionFunctionType.get())
-                        {
-                            print(".(");
-                        }
-
-                        if (i == paramCount)
-                        {
-                            print(") -> ");
-                        }
-                        else if (i > 0 && !isExtensionFunctionType.get() ||
-                                 i > 1 &&  isExtensionFunctionType.get())
-                        {
-                            print(", ");
-                        }
-                    },
-                    this));
+                typeArgumentPrinter.printTypeArguments(clazz,
+                                                       kotlinTypeMetadata,
+                                                       true,
+                                                       isExtensionFunctionType,
+                                                       functionTypeParameterCount(kotlinTypeMetadata.className));
 
                 if (kotlinTypeMetadata.flags.isNullable)
                 {
@@ -935,11 +1019,7 @@ implements   KotlinMetadataVisitor
                     print(" & Any");
                 }
 
-                kotlinTypeMetadata.typeArgumentsAccept(clazz,
-                    new KotlinTypeVisitorWrapper(
-                    (i, _kotlinTypeMetadata) -> print(i == 0 ? "<" : ", "),
-                    this,
-                    (i, _kotlinTypeMetadata) -> print(i == kotlinTypeMetadata.typeArguments.size() - 1 ? ">" : "")));
+                typeArgumentPrinter.printTypeArguments(clazz, kotlinTypeMetadata, false, false, 0);
             }
         }
 
@@ -1086,9 +1166,14 @@ implements   KotlinMetadataVisitor
         {
             // Cache the synthetic class string, as we might have already visited them, so the string will be empty.
             pushStringBuilder();
+            // Index the inner classes once, instead of scanning the class pool for every class.
+            if (innerClassIndex == null)
+            {
+                innerClassIndex = new InnerClassIndex(programClassPool);
+            }
             // Only visit the classes that have not yet been visited in the previous nested classes visits.
-            programClassPool.classesAccept(
-                clazz.getName() + TypeConstants.INNER_CLASS_SEPARATOR + "*",
+            innerClassIndex.innerClassesAccept(
+                clazz.getName(),
                 new ClassPresenceFilter(
                     visitedNestedClassPool,
                     null,
@@ -1102,6 +1187,124 @@ implements   KotlinMetadataVisitor
                 print(innerClassesString);
             }
         }
+
+
+        /**
+         * Prints the type arguments of a type, with the separators of either
+         * a normal type, e.g. "Map<K, V>", or a function type, e.g.
+         * "T.(A, B) -> R". A single instance is reused for all types, so it
+         * saves its state while printing nested type arguments.
+         */
+        private class TypeArgumentPrinter
+        implements    KotlinTypeVisitor
+        {
+            private int     index;
+            private int     typeArgumentCount;
+            private boolean isFunctionType;
+            private boolean isExtensionFunctionType;
+            private int     parameterCount;
+
+
+            public void printTypeArguments(Clazz              clazz,
+                                           KotlinTypeMetadata kotlinTypeMetadata,
+                                           boolean            isFunctionType,
+                                           boolean            isExtensionFunctionType,
+                                           int                parameterCount)
+            {
+                int     savedIndex                   = this.index;
+                int     savedTypeArgumentCount       = this.typeArgumentCount;
+                boolean savedIsFunctionType          = this.isFunctionType;
+                boolean savedIsExtensionFunctionType = this.isExtensionFunctionType;
+                int     savedParameterCount          = this.parameterCount;
+
+                this.index                   = 0;
+                this.typeArgumentCount       = kotlinTypeMetadata.typeArguments.size();
+                this.isFunctionType          = isFunctionType;
+                this.isExtensionFunctionType = isExtensionFunctionType;
+                this.parameterCount          = parameterCount;
+
+                try
+                {
+                    kotlinTypeMetadata.typeArgumentsAccept(clazz, this);
+                }
+                finally
+                {
+                    this.index                   = savedIndex;
+                    this.typeArgumentCount       = savedTypeArgumentCount;
+                    this.isFunctionType          = savedIsFunctionType;
+                    this.isExtensionFunctionType = savedIsExtensionFunctionType;
+                    this.parameterCount          = savedParameterCount;
+                }
+            }
+
+
+            // Implementations for KotlinTypeVisitor.
+
+            @Override
+            public void visitAnyType(Clazz clazz, KotlinTypeMetadata kotlinTypeMetadata) { }
+
+
+            @Override
+            public void visitTypeArgument(Clazz              clazz,
+                                          KotlinTypeMetadata kotlinTypeMetadata,
+                                          KotlinTypeMetadata typeArgument)
+            {
+                before();
+                MyKotlinSourceMetadataPrinter.this.visitTypeArgument(clazz, kotlinTypeMetadata, typeArgument);
+                after();
+            }
+
+
+            @Override
+            public void visitStarProjection(Clazz clazz, KotlinTypeMetadata typeWithStarArg)
+            {
+                before();
+                MyKotlinSourceMetadataPrinter.this.visitStarProjection(clazz, typeWithStarArg);
+                after();
+            }
+
+
+            // Small utility methods.
+
+            private void before()
+            {
+                int i = index;
+                if (!isFunctionType)
+                {
+                    print(i == 0 ? "<" : ", ");
+                    return;
+                }
+
+                if (i == 0 && !isExtensionFunctionType)
+                {
+                    print("(");
+                }
+                else if (i == 1 && isExtensionFunctionType)
+                {
+                    print(".(");
+                }
+
+                if (i == parameterCount)
+                {
+                    print(") -> ");
+                }
+                else if (i > 0 && !isExtensionFunctionType ||
+                         i > 1 &&  isExtensionFunctionType)
+                {
+                    print(", ");
+                }
+            }
+
+
+            private void after()
+            {
+                if (!isFunctionType && index == typeArgumentCount - 1)
+                {
+                    print(">");
+                }
+                index++;
+            }
+        }
     }
 
     // Small utility methods.
@@ -1138,29 +1341,64 @@ implements   KotlinMetadataVisitor
     }
 
 
+    /**
+     * Starts a new nested string builder, which collects the subsequent
+     * output until it is popped.
+     */
     public void pushStringBuilder()
     {
-        stringBuilders.push(new StringBuilder());
+        if (markCount == marks.length)
+        {
+            marks = Arrays.copyOf(marks, 2 * marks.length);
+        }
+        marks[markCount++] = buffer.length();
     }
 
 
+    /**
+     * Ends the current nested string builder, and removes and returns its
+     * output.
+     */
     public String popStringBuilder()
     {
-        StringBuilder sb = stringBuilders.pop();
-        return sb.toString();
+        int    mark   = marks[--markCount];
+        String string = buffer.substring(mark);
+        buffer.setLength(mark);
+        return string;
     }
 
 
+    /**
+     * Ends the current nested string builder, keeping its output in place,
+     * as part of the enclosing string builder.
+     */
+    public void mergeStringBuilder()
+    {
+        markCount--;
+    }
+
+
+    /**
+     * Clears the output of the current nested string builder.
+     */
     public void resetStringBuilder()
     {
-        popStringBuilder();
-        pushStringBuilder();
+        buffer.setLength(marks[markCount - 1]);
+    }
+
+
+    /**
+     * Returns the length of the output of the current nested string builder.
+     */
+    public int stringBuilderLength()
+    {
+        return buffer.length() - marks[markCount - 1];
     }
 
 
     public char previousChar()
     {
-        return stringBuilders.size() > 0 ? stringBuilders.peek().charAt(stringBuilders.peek().length() - 1) : (char)-1;
+        return markCount > 0 && stringBuilderLength() > 0 ? buffer.charAt(buffer.length() - 1) : (char)-1;
     }
 
     public void indent()
@@ -1200,161 +1438,61 @@ implements   KotlinMetadataVisitor
         {
             for (int index = 0; index < indentation; index++)
             {
-                stringBuilders.peek().append(INDENTATION);
+                buffer.append(INDENTATION);
             }
         }
 
-        stringBuilders.peek().append(string);
+        buffer.append(string);
     }
 
 
     public void println()
     {
-        stringBuilders.peek().append(lineSeparator());
-    }
-
-
-    // Flag printing helpers
-    private String modalityFlags(boolean printAbstract, KotlinModalityFlags flags)
-    {
-        return
-            (flags.isFinal         ? ""                      : "") +
-            (flags.isOpen          ? "open "                 : "") +
-            (flags.isAbstract && printAbstract ? "abstract " : "") +
-            (flags.isSealed        ? "sealed "               : "");
-    }
-
-
-    private String visibilityFlags(KotlinVisibilityFlags flags)
-    {
-        return
-            (flags.isInternal      ? "internal "  : "") +
-            (flags.isPrivate       ? "private "   : "") +
-            (flags.isPublic        ? ""           : "") + //default
-            (flags.isProtected     ? "protected " : "") +
-            (flags.isPrivateToThis ? ""           : "") +
-            (flags.isLocal         ? ""           : "");
-    }
-
-
-    private String classFlags(KotlinClassFlags flags)
-    {
-       return
-           visibilityFlags(flags.visibility) + modalityFlags(!flags.isInterface, flags.modality) +
-           (flags.isAnnotationClass ? "annotation class "  : "") +
-           (flags.isInner           ? "inner "             : "") + // Also isUsualClass = true.
-           (flags.isData            ? "data "              : "") + // Also isUsualClass = true.
-           (flags.isValue           ? "value "             : "") + // Also isUsualClass = true.
-           (flags.isUsualClass      ? "class "             : "") +
-           (flags.isFun             ? "fun "               : "") +
-           (flags.isInterface       ? "interface "         : "") +
-           (flags.isObject          ? "object "            : "") +
-           (flags.isExpect          ? "expect "            : "") +
-           (flags.isExternal        ? "external "          : "") +
-           (flags.isCompanionObject ? "companion object "  : "") +
-           (flags.isEnumEntry       ? "enum entry "        : "") +
-           (flags.isEnumClass       ? "enum class "        : "") +
-           // JVM specific flags
-           (flags.isCompiledInCompatibilityMode ? "/* compiledInCompatibilityMode */ " : "") +
-           (flags.hasMethodBodiesInInterface    ? "/* hasMethodBodiesInInterface */"  : "");
-    }
-
-
-    private String effectExpressionFlags(KotlinEffectExpressionFlags flags)
-    {
-        return
-            (flags.isNegated ? "negated " : "") +
-            (flags.isNullCheckPredicate ? "nullCheckPredicate " : "");
-    }
-
-
-    private String functionFlags(KotlinFunctionFlags flags)
-    {
-        return
-            visibilityFlags(flags.visibility) + modalityFlags(true, flags.modality) +
-            (flags.isDeclaration  ? ""                 : "") +
-            (flags.isFakeOverride ? "fakeOverride "    : "") +
-            (flags.isDelegation   ? "by "              : "") +
-            (flags.isSynthesized  ? "/* synthetic */ " : "") +
-            (flags.isInline       ? "inline "          : "") +
-            (flags.isInfix        ? "infix "           : "") +
-            (flags.isOperator     ? "operator "        : "") +
-            (flags.isTailrec      ? "tailrec "         : "") +
-            (flags.isExternal     ? "external "        : "") +
-            (flags.isSuspend      ? "suspend "         : "") +
-            (flags.isExpect       ? "expect "          : "");
-    }
-
-
-    private String propertyAccessorFlags(KotlinPropertyAccessorMetadata flags)
-    {
-        return
-            visibilityFlags(flags.visibility) + modalityFlags(true, flags.modality) +
-            (flags.isDefault  ? ""          : "") +
-            (flags.isExternal ? "external " : "") +
-            (flags.isInline   ? "inline "   : "");
+        buffer.append(lineSeparator());
     }
 
 
-    private String propertyFlags(KotlinPropertyFlags flags)
-    {
-        return
-            visibilityFlags(flags.visibility) + modalityFlags(true, flags.modality) +
-            (flags.isDeclared     ? ""              : "") +
-            (flags.isFakeOverride ? "fakeOverride " : "") +
-            (flags.isDelegation   ? "by "           : "") +
-            (flags.isSynthesized  ? "/* synthetic */ "    : "") +
-            (flags.isVar          ? "var "          : "val ") +
-            (flags.isConst        ? "const "        : "") +
-            (flags.isLateinit     ? "lateinit "     : "") +
-            (flags.hasConstant    ? ""  : "") +
-            (flags.isExternal     ? "external "     : "") +
-            (flags.isDelegated    ? "/* delegated */ "    : "") +
-            (flags.isExpect       ? "expect "       : "") +
-            //JVM specific flags
-            (flags.isMovedFromInterfaceCompanion ? "movedFromInterfaceCompanion " : "");
-    }
-
-
-    private String typeFlags(KotlinTypeFlags flags)
+    /**
+     * Returns the number of parameters of the given function type, e.g. 2 for
+     * "kotlin/Function2", or 0 if it doesn't have a number.
+     */
+    private static int functionTypeParameterCount(String className)
     {
-        return
-            //(flags.isNullable ? "nullable " : "") + //printed as ? after name in printKotlinTypeMetadata
-            (flags.isSuspend  ? "suspend " : "");
-    }
+        int start = KotlinConstants.NAME_KOTLIN_FUNCTION.length();
+        if (className.length() == start)
+        {
+            return 0;
+        }
 
+        int parameterCount = 0;
+        for (int index = start; index < className.length(); index++)
+        {
+            char c = className.charAt(index);
+            if (c < '0' || c > '9')
+            {
+                return 0;
+            }
+            parameterCount = parameterCount * 10 + (c - '0');
+        }
 
-    private String typeParameterFlags(KotlinTypeParameterFlags flags)
-    {
-        return flags.isReified ? "reified " : "";
+        return parameterCount;
     }
 
 
-    private String valueParameterFlags(KotlinValueParameterFlags flags)
-    {
-        return
-            (flags.isCrossInline   ? "crossinline " : "") +
-            (flags.isNoInline      ? "noinline "    : "") +
-            (flags.hasDefaultValue ? ""  : "");
-    }
-
     private enum ValueParameterType
     {
         NORMAL, VAR, VAL
     }
 
-    private static class ConstructorValParameterTypeChecker implements KotlinPropertyVisitor
+    /**
+     * Returns whether a constructor parameter is a val, a var, or a normal
+     * parameter, based on the property with the same name, if any.
+     */
+    private static ValueParameterType valueParameterType(KotlinPropertyMetadata kotlinPropertyMetadata)
     {
-        public ValueParameterType valueParameterType = ValueParameterType.NORMAL;
-
-        @Override
-        public void visitAnyProperty(Clazz clazz,
-                                     KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata,
-                                     KotlinPropertyMetadata kotlinPropertyMetadata)
-        {
-            if (kotlinPropertyMetadata.setterMetadata != null && kotlinPropertyMetadata.setterMetadata.signature != null) valueParameterType = ValueParameterType.VAR;
-            else if (kotlinPropertyMetadata.getterMetadata != null && kotlinPropertyMetadata.getterMetadata.signature != null) valueParameterType = ValueParameterType.VAL;
-            else valueParameterType = ValueParameterType.NORMAL;
-        }
+        if (kotlinPropertyMetadata == null) return ValueParameterType.NORMAL;
+        if (kotlinPropertyMetadata.setterMetadata != null && kotlinPropertyMetadata.setterMetadata.signature != null) return ValueParameterType.VAR;
+        if (kotlinPropertyMetadata.getterMetadata != null && kotlinPropertyMetadata.getterMetadata.signature != null) return ValueParameterType.VAL;
+        return ValueParameterType.NORMAL;
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer;
+
+import com.guardsquare.proguard.kotlin.printer.internal.InnerClassIndex;
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.constant.Constant;
+import proguard.classfile.constant.Utf8Constant;
+import proguard.classfile.constant.visitor.AllConstantVisitor;
+import proguard.classfile.constant.visitor.ConstantVisitor;
+
+/**
+ * This class holds the immutable configuration of the Kotlin metadata
+ * printer for a program class pool, and creates the printers from it.
+ * <p>
+ * A {@link KotlinMetadataPrinter} keeps its rendering state while printing a
+ * class, so it can only be used by one thread at a time. The factory itself
+ * is thread-safe: each worker thread creates its own printer, to print
+ * classes of the same class pool in parallel, and drops it when it is done.
+ * The factory doesn't keep the printers that it creates. The printers share the index of the inner classes, which is
+ * created once, up front, so the class pool must be complete by then. After
+ * changing the class pool, create a new factory.
+ * <p>
+ * The strings in the constant pools of the classes are decoded lazily, on
+ * first use, which isn't thread-safe. The factory therefore decodes all of
+ * them up front as well.
+ *
+ * @author James Hamilton
+ */
+public class KotlinMetadataPrinterFactory
+{
+    private final ClassPool       programClassPool;
+    private final boolean         excludeEmbedded;
+    private final InnerClassIndex innerClassIndex;
+
+
+    /**
+     * Creates a new KotlinMetadataPrinterFactory.
+     * @param programClassPool the class pool with the classes to print.
+     */
+    public KotlinMetadataPrinterFactory(ClassPool programClassPool)
+    {
+        this(programClassPool, true);
+    }
+
+
+    /**
+     * Creates a new KotlinMetadataPrinterFactory.
+     * @param programClassPool the class pool with the classes to print.
+     * @param excludeEmbedded  specifies whether the printers only print
+     *                         synthetic classes and multi-file class parts
+     *                         within their outer classes and facades.
+     */
+    public KotlinMetadataPrinterFactory(ClassPool programClassPool, boolean excludeEmbedded)
+    {
+        this.programClassPool = programClassPool;
+        this.excludeEmbedded  = excludeEmbedded;
+        this.innerClassIndex  = new InnerClassIndex(programClassPool);
+
+        // Decode the constant pool strings, before any printers share them.
+        programClassPool.classesAccept(new AllConstantVisitor(new Utf8ConstantDecoder()));
+    }
+
+
+    /**
+     * Returns a new printer, to be used by a single thread.
+     */
+    public KotlinMetadataPrinter createPrinter()
+    {
+        return new KotlinMetadataPrinter(programClassPool, excludeEmbedded, innerClassIndex);
+    }
+
+
+    public ClassPool getProgramClassPool()
+    {
+        return programClassPool;
+    }
+
+
+    public boolean isExcludeEmbedded()
+    {
+        return excludeEmbedded;
+    }
+
+
+    /**
+     * This {@link ConstantVisitor} decodes the strings of the Utf8 constants
+     * that it visits.
+     */
+    private static class Utf8ConstantDecoder
+    implements           ConstantVisitor
+    {
+        // Implementations for ConstantVisitor.
+
+        @Override
+        public void visitAnyConstant(Clazz clazz, Constant constant) { }
+
+
+        @Override
+        public void visitUtf8Constant(Clazz clazz, Utf8Constant utf8Constant)
+        {
+            utf8Constant.getString();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer;
+
+import proguard.classfile.ClassPool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class keeps a pool of idle {@link KotlinMetadataPrinter} instances,
+ * so long-running services can reuse warm printers, with their buffers,
+ * instead of creating a new printer for every request.
+ * <p>
+ * A printer is borrowed for a given program class pool, used by a single
+ * thread, and then released. Released printers are reset, so they don't
+ * keep any classes of earlier requests alive. The pool is thread-safe.
+ *
+ * @author James Hamilton
+ */
+public class KotlinMetadataPrinterPool
+{
+    private final boolean                              excludeEmbedded;
+    private final BlockingQueue<KotlinMetadataPrinter> idlePrinters;
+
+
+    /**
+     * Creates a new KotlinMetadataPrinterPool.
+     * @param maxIdleCount the maximum number of idle printers to keep.
+     */
+    public KotlinMetadataPrinterPool(int maxIdleCount)
+    {
+        this(maxIdleCount, true);
+    }
+
+
+    /**
+     * Creates a new KotlinMetadataPrinterPool.
+     * @param maxIdleCount    the maximum number of idle printers to keep.
+     * @param excludeEmbedded specifies whether the printers only print synthetic
+     *                        classes and multi-file class parts within their
+     *                        outer classes and facades.
+     */
+    public KotlinMetadataPrinterPool(int maxIdleCount, boolean excludeEmbedded)
+    {
+        this.excludeEmbedded = excludeEmbedded;
+        this.idlePrinters    = new ArrayBlockingQueue<>(maxIdleCount);
+    }
+
+
+    /**
+     * Returns an idle printer, or a new one if there is none, to print the
+     * classes of the given program class pool.
+     */
+    public KotlinMetadataPrinter borrow(ClassPool programClassPool)
+    {
+        KotlinMetadataPrinter printer = idlePrinters.poll();
+        if (printer == null)
+        {
+            return new KotlinMetadataPrinter(programClassPool, excludeEmbedded);
+        }
+
+        printer.reset(programClassPool);
+        return printer;
+    }
+
+
+    /**
+     * Returns the given printer to the pool, after resetting it. The printer
+     * is discarded if the pool already holds the maximum number of idle
+     * printers. The caller must not use the printer anymore afterwards.
+     */
+    public void release(KotlinMetadataPrinter printer)
+    {
+        printer.reset(null);
+        idlePrinters.offer(printer);
+    }
+
+
+    /**
+     * Returns the number of idle printers in the pool.
+     */
+    public int idleCount()
+    {
+        return idlePrinters.size();
+    }
+}
@@ -32,10 +32,26 @@ import static proguard.classfile.kotlin.KotlinConstants.METADATA_KIND_FILE_FACAD
 public class Context
 implements   KotlinTypeParameterVisitor
 {
+    private static final String[] DEFAULT_IMPORT_PACKAGES = new String[]
+    {
+        "annotation/",
+        "collections/",
+        "comparisons/",
+        "io/",
+        "ranges/",
+        "sequences/",
+        "test/",
+        "jvm/",
+    };
 
     private final Stack<ContextFrame>      contextFrameStack = new Stack<>();
     private final HashMap<Integer, String> typeParamIdMap    = new HashMap<>();
 
+    // The resolved class names for each frame, by dollar replacement and
+    // class name. The names only depend on the frames up to and including
+    // their own frame, so they remain valid until their frame is popped.
+    private final Stack<HashMap<String, HashMap<String, String>>> classNameCacheStack = new Stack<>();
+
     private String packageName = "";
 
     public void push(ContextFrame contextFrame)
@@ -47,6 +63,7 @@ implements   KotlinTypeParameterVisitor
         }
 
         contextFrameStack.push(contextFrame);
+        classNameCacheStack.push(null);
 
         if (previous().kotlinMetadataKind == METADATA_KIND_FILE_FACADE)
         {
@@ -63,10 +80,35 @@ implements   KotlinTypeParameterVisitor
 
     public ContextFrame pop()
     {
+        classNameCacheStack.pop();
         return contextFrameStack.pop();
     }
 
 
+    /**
+     * Clears all frames and type parameters, e.g. after printing has failed.
+     */
+    public void clear()
+    {
+        contextFrameStack.clear();
+        classNameCacheStack.clear();
+        typeParamIdMap.clear();
+        packageName = "";
+    }
+
+
+    /**
+     * Returns the frame on top of the stack, or an empty frame if there is
+     * none.
+     */
+    public ContextFrame current()
+    {
+        return contextFrameStack.empty() ?
+            ContextFrame.EMPTY_CONTEXT_FRAME :
+            contextFrameStack.peek();
+    }
+
+
     public boolean isTop()
     {
         return contextFrameStack.size() == 1;
@@ -79,6 +121,38 @@ implements   KotlinTypeParameterVisitor
     }
 
     public String className(String className, String dollarReplacement)
+    {
+        if (classNameCacheStack.empty())
+        {
+            return resolveClassName(className, dollarReplacement);
+        }
+
+        HashMap<String, HashMap<String, String>> classNameCache = classNameCacheStack.peek();
+        if (classNameCache == null)
+        {
+            classNameCache = new HashMap<>();
+            classNameCacheStack.set(classNameCacheStack.size() - 1, classNameCache);
+        }
+
+        HashMap<String, String> classNames = classNameCache.get(dollarReplacement);
+        if (classNames == null)
+        {
+            classNames = new HashMap<>();
+            classNameCache.put(dollarReplacement, classNames);
+        }
+
+        String result = classNames.get(className);
+        if (result == null)
+        {
+            result = resolveClassName(className, dollarReplacement);
+            classNames.put(className, result);
+        }
+
+        return result;
+    }
+
+
+    private String resolveClassName(String className, String dollarReplacement)
     {
         if (className.length() == 0)
         {
@@ -96,33 +170,35 @@ implements   KotlinTypeParameterVisitor
             if (kotlinMetadata.k == METADATA_KIND_CLASS)
             {
                 KotlinClassKindMetadata kotlinClassKindMetadata = (KotlinClassKindMetadata)kotlinMetadata;
-                if (className.startsWith(kotlinClassKindMetadata.className + "$"))
+                if (startsWithInnerClassPrefix(className, kotlinClassKindMetadata.className))
                 {
-                    result = result.replace(kotlinClassKindMetadata.className + "$", "");
+                    result = removeAll(result, kotlinClassKindMetadata.className + "$");
                 }
             }
             else if (kotlinMetadata.k == METADATA_KIND_FILE_FACADE)
             {
                 String fileFacadeClazzName = contextItem.clazz.getName();
-                if (className.startsWith(fileFacadeClazzName + "$"))
+                if (startsWithInnerClassPrefix(className, fileFacadeClazzName))
                 {
-                    result = result.replace(fileFacadeClazzName + "$", "");
+                    result = removeAll(result, fileFacadeClazzName + "$");
                 }
             }
         }
 
         // Remove the package prefix if it's the current one.
-        if (result.equals(packageName + "/" + ClassUtil.internalShortClassName(className)))
+        int    packageLength  = packageName.length();
+        String shortClassName = ClassUtil.internalShortClassName(className);
+        if (result.length() == packageLength + 1 + shortClassName.length() &&
+            result.startsWith(packageName)                                 &&
+            result.charAt(packageLength) == '/'                            &&
+            result.endsWith(shortClassName))
         {
-            result = result.replaceFirst("^" + packageName + "/", "");
+            result = result.substring(packageLength + 1);
         }
         // Replace default imports.
-        result = result.replaceFirst(
-            "^kotlin/(?:(?:annotation|collections|comparisons|io|ranges|sequences|test|jvm)/)?([^/]*)$",
-            "$1");
-        result = result.replaceFirst("^java/lang/([^/]*)$", "$1");
+        result = removeDefaultImportPackage(result);
         // Replace $ with something valid.
-        result = result.replace("$", dollarReplacement);
+        result = replaceDollars(result, dollarReplacement);
         // Convert to external format.
         result = ClassUtil.externalClassName(result);
         // It's possible that the name is no longer valid i.e. it is a number
@@ -149,7 +225,8 @@ implements   KotlinTypeParameterVisitor
 
     public String getTypeParamName(int i)
     {
-        return this.typeParamIdMap.getOrDefault(i, "X /* unknown " + i + " */");
+        String name = this.typeParamIdMap.get(i);
+        return name != null ? name : "X /* unknown " + i + " */";
     }
 
 
@@ -159,6 +236,108 @@ implements   KotlinTypeParameterVisitor
     }
 
 
+    // Small utility methods.
+
+    /**
+     * Returns whether the given class name starts with the given outer class
+     * name, followed by '$'.
+     */
+    private static boolean startsWithInnerClassPrefix(String className, String outerClassName)
+    {
+        return className.length() > outerClassName.length()     &&
+               className.charAt(outerClassName.length()) == '$' &&
+               className.startsWith(outerClassName);
+    }
+
+
+    /**
+     * Removes all occurrences of the given substring from the given string.
+     */
+    private static String removeAll(String string, String substring)
+    {
+        int index = string.indexOf(substring);
+        if (index < 0)
+        {
+            return string;
+        }
+
+        StringBuilder builder = new StringBuilder(string.length());
+        int start = 0;
+        do
+        {
+            builder.append(string, start, index);
+            start = index + substring.length();
+            index = string.indexOf(substring, start);
+        }
+        while (index >= 0);
+
+        return builder.append(string, start, string.length()).toString();
+    }
+
+
+    /**
+     * Removes the package of the given class name if it is imported by
+     * default, i.e. if it's "kotlin", one of the default kotlin subpackages,
+     * or "java/lang".
+     */
+    private static String removeDefaultImportPackage(String className)
+    {
+        if (className.startsWith("kotlin/"))
+        {
+            String name = className.substring("kotlin/".length());
+            if (name.indexOf('/') < 0)
+            {
+                return name;
+            }
+
+            for (String defaultImportPackage : DEFAULT_IMPORT_PACKAGES)
+            {
+                if (name.startsWith(defaultImportPackage) &&
+                    name.indexOf('/', defaultImportPackage.length()) < 0)
+                {
+                    return name.substring(defaultImportPackage.length());
+                }
+            }
+        }
+        else if (className.startsWith("java/lang/") &&
+                 className.indexOf('/', "java/lang/".length()) < 0)
+        {
+            return className.substring("java/lang/".length());
+        }
+
+        return className;
+    }
+
+
+    /**
+     * Replaces all '$' characters in the given class name by the given
+     * replacement.
+     */
+    private static String replaceDollars(String className, String dollarReplacement)
+    {
+        if (className.indexOf('$') < 0)
+        {
+            return className;
+        }
+
+        StringBuilder builder = new StringBuilder(className.length() + 8);
+        for (int index = 0; index < className.length(); index++)
+        {
+            char c = className.charAt(index);
+            if (c == '$')
+            {
+                builder.append(dollarReplacement);
+            }
+            else
+            {
+                builder.append(c);
+            }
+        }
+
+        return builder.toString();
+    }
+
+
     @Override
     public void visitAnyTypeParameter(Clazz clazz, KotlinTypeParameterMetadata kotlinTypeParameterMetadata)
     {
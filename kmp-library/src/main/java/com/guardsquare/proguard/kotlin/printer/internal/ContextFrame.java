@@ -8,8 +8,16 @@
 package com.guardsquare.proguard.kotlin.printer.internal;
 
 import proguard.classfile.Clazz;
+import proguard.classfile.kotlin.KotlinClassKindMetadata;
 import proguard.classfile.kotlin.KotlinFunctionMetadata;
 import proguard.classfile.kotlin.KotlinMetadata;
+import proguard.classfile.kotlin.KotlinPropertyMetadata;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static proguard.classfile.kotlin.KotlinConstants.METADATA_KIND_CLASS;
 
 /**
  * @author James Hamilton
@@ -23,6 +31,9 @@ public class ContextFrame
     public final int                    kotlinMetadataKind;
     public final KotlinFunctionMetadata kotlinFunctionMetadata;
 
+    // The properties of a class, by name, for looking up constructor val/var parameters.
+    private final Map<String, KotlinPropertyMetadata> propertiesByName;
+
 
     private ContextFrame()
     {
@@ -42,5 +53,33 @@ public class ContextFrame
         this.kotlinMetadata         = kotlinMetadata;
         this.kotlinMetadataKind     = kotlinMetadata != null ? kotlinMetadata.k : -1;
         this.kotlinFunctionMetadata = kotlinFunctionMetadata;
+        this.propertiesByName       = kotlinMetadataKind == METADATA_KIND_CLASS ?
+            propertiesByName((KotlinClassKindMetadata)kotlinMetadata) :
+            Collections.<String, KotlinPropertyMetadata>emptyMap();
+    }
+
+
+    /**
+     * Returns the property of the class of this frame with the given name,
+     * or null if there is no such property.
+     */
+    public KotlinPropertyMetadata property(String name)
+    {
+        return propertiesByName.get(name);
+    }
+
+
+    // Small utility methods.
+
+    private static Map<String, KotlinPropertyMetadata> propertiesByName(KotlinClassKindMetadata kotlinClassKindMetadata)
+    {
+        Map<String, KotlinPropertyMetadata> propertiesByName = new HashMap<>();
+        for (KotlinPropertyMetadata kotlinPropertyMetadata : kotlinClassKindMetadata.properties)
+        {
+            // If several properties have the same name, the last one applies.
+            propertiesByName.put(kotlinPropertyMetadata.name, kotlinPropertyMetadata);
+        }
+
+        return propertiesByName;
     }
 }
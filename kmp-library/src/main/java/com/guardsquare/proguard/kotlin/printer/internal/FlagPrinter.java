@@ -0,0 +1,155 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.internal;
+
+import proguard.classfile.kotlin.flags.KotlinClassFlags;
+import proguard.classfile.kotlin.flags.KotlinEffectExpressionFlags;
+import proguard.classfile.kotlin.flags.KotlinFunctionFlags;
+import proguard.classfile.kotlin.flags.KotlinModalityFlags;
+import proguard.classfile.kotlin.flags.KotlinPropertyAccessorMetadata;
+import proguard.classfile.kotlin.flags.KotlinPropertyFlags;
+import proguard.classfile.kotlin.flags.KotlinTypeFlags;
+import proguard.classfile.kotlin.flags.KotlinTypeParameterFlags;
+import proguard.classfile.kotlin.flags.KotlinValueParameterFlags;
+import proguard.classfile.kotlin.flags.KotlinVisibilityFlags;
+
+/**
+ * Utility methods to print Kotlin flags as the corresponding Kotlin
+ * modifiers, e.g. "<code>private inline </code>".
+ *
+ * @author James Hamilton
+ */
+public class FlagPrinter
+{
+    private FlagPrinter() {}
+
+
+    public static String modalityFlags(boolean printAbstract, KotlinModalityFlags flags)
+    {
+        return
+            (flags.isFinal         ? ""                      : "") +
+            (flags.isOpen          ? "open "                 : "") +
+            (flags.isAbstract && printAbstract ? "abstract " : "") +
+            (flags.isSealed        ? "sealed "               : "");
+    }
+
+
+    public static String visibilityFlags(KotlinVisibilityFlags flags)
+    {
+        return
+            (flags.isInternal      ? "internal "  : "") +
+            (flags.isPrivate       ? "private "   : "") +
+            (flags.isPublic        ? ""           : "") + //default
+            (flags.isProtected     ? "protected " : "") +
+            (flags.isPrivateToThis ? ""           : "") +
+            (flags.isLocal         ? ""           : "");
+    }
+
+
+    public static String classFlags(KotlinClassFlags flags)
+    {
+       return
+           visibilityFlags(flags.visibility) + modalityFlags(!flags.isInterface, flags.modality) +
+           (flags.isAnnotationClass ? "annotation class "  : "") +
+           (flags.isInner           ? "inner "             : "") + // Also isUsualClass = true.
+           (flags.isData            ? "data "              : "") + // Also isUsualClass = true.
+           (flags.isValue           ? "value "             : "") + // Also isUsualClass = true.
+           (flags.isUsualClass      ? "class "             : "") +
+           (flags.isFun             ? "fun "               : "") +
+           (flags.isInterface       ? "interface "         : "") +
+           (flags.isObject          ? "object "            : "") +
+           (flags.isExpect          ? "expect "            : "") +
+           (flags.isExternal        ? "external "          : "") +
+           (flags.isCompanionObject ? "companion object "  : "") +
+           (flags.isEnumEntry       ? "enum entry "        : "") +
+           (flags.isEnumClass       ? "enum class "        : "") +
+           // JVM specific flags
+           (flags.isCompiledInCompatibilityMode ? "/* compiledInCompatibilityMode */ " : "") +
+           (flags.hasMethodBodiesInInterface    ? "/* hasMethodBodiesInInterface */"  : "");
+    }
+
+
+    public static String effectExpressionFlags(KotlinEffectExpressionFlags flags)
+    {
+        return
+            (flags.isNegated ? "negated " : "") +
+            (flags.isNullCheckPredicate ? "nullCheckPredicate " : "");
+    }
+
+
+    public static String functionFlags(KotlinFunctionFlags flags)
+    {
+        return
+            visibilityFlags(flags.visibility) + modalityFlags(true, flags.modality) +
+            (flags.isDeclaration  ? ""                 : "") +
+            (flags.isFakeOverride ? "fakeOverride "    : "") +
+            (flags.isDelegation   ? "by "              : "") +
+            (flags.isSynthesized  ? "/* synthetic */ " : "") +
+            (flags.isInline       ? "inline "          : "") +
+            (flags.isInfix        ? "infix "           : "") +
+            (flags.isOperator     ? "operator "        : "") +
+            (flags.isTailrec      ? "tailrec "         : "") +
+            (flags.isExternal     ? "external "        : "") +
+            (flags.isSuspend      ? "suspend "         : "") +
+            (flags.isExpect       ? "expect "          : "");
+    }
+
+
+    public static String propertyAccessorFlags(KotlinPropertyAccessorMetadata flags)
+    {
+        return
+            visibilityFlags(flags.visibility) + modalityFlags(true, flags.modality) +
+            (flags.isDefault  ? ""          : "") +
+            (flags.isExternal ? "external " : "") +
+            (flags.isInline   ? "inline "   : "");
+    }
+
+
+    public static String propertyFlags(KotlinPropertyFlags flags)
+    {
+        return
+            visibilityFlags(flags.visibility) + modalityFlags(true, flags.modality) +
+            (flags.isDeclared     ? ""              : "") +
+            (flags.isFakeOverride ? "fakeOverride " : "") +
+            (flags.isDelegation   ? "by "           : "") +
+            (flags.isSynthesized  ? "/* synthetic */ "    : "") +
+            (flags.isVar          ? "var "          : "val ") +
+            (flags.isConst        ? "const "        : "") +
+            (flags.isLateinit     ? "lateinit "     : "") +
+            (flags.hasConstant    ? ""  : "") +
+            (flags.isExternal     ? "external "     : "") +
+            (flags.isDelegated    ? "/* delegated */ "    : "") +
+            (flags.isExpect       ? "expect "       : "") +
+            //JVM specific flags
+            (flags.isMovedFromInterfaceCompanion ? "movedFromInterfaceCompanion " : "");
+    }
+
+
+    public static String typeFlags(KotlinTypeFlags flags)
+    {
+        // Types are printed a lot, so this returns constants, without
+        // concatenating strings. Nullability is printed as '?' after the
+        // name in printKotlinTypeMetadata.
+        return flags.isSuspend ? "suspend " : "";
+    }
+
+
+    public static String typeParameterFlags(KotlinTypeParameterFlags flags)
+    {
+        return flags.isReified ? "reified " : "";
+    }
+
+
+    public static String valueParameterFlags(KotlinValueParameterFlags flags)
+    {
+        return
+            (flags.isCrossInline   ? "crossinline " : "") +
+            (flags.isNoInline      ? "noinline "    : "") +
+            (flags.hasDefaultValue ? ""  : "");
+    }
+}
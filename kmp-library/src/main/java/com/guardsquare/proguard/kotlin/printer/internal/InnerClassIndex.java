@@ -0,0 +1,83 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2026 Guardsquare NV
+ */
+
+package com.guardsquare.proguard.kotlin.printer.internal;
+
+import proguard.classfile.ClassPool;
+import proguard.classfile.Clazz;
+import proguard.classfile.TypeConstants;
+import proguard.classfile.visitor.ClassVisitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the inner classes in a class pool, by outer class name.
+ *
+ * The inner classes of an outer class are the classes that
+ * <code>outerClassName + "$*"</code> matches, i.e. all classes in the same
+ * package whose names start with the outer class name and '$', including
+ * inner classes of inner classes. They are kept in the order of the class
+ * pool, so visiting them is equivalent to visiting the class pool with that
+ * filter, without scanning the entire class pool for each outer class.
+ *
+ * The index doesn't track later changes to the class pool, so it should
+ * only be created once the class pool is complete, and created again after
+ * the class pool has changed.
+ *
+ * @author James Hamilton
+ */
+public class InnerClassIndex
+implements   ClassVisitor
+{
+    private final Map<String, List<Clazz>> innerClasses = new HashMap<>();
+
+
+    public InnerClassIndex(ClassPool classPool)
+    {
+        classPool.classesAccept(this);
+    }
+
+
+    /**
+     * Lets the given visitor visit the inner classes of the given outer class,
+     * in the order of the class pool.
+     */
+    public void innerClassesAccept(String outerClassName, ClassVisitor classVisitor)
+    {
+        List<Clazz> classes = innerClasses.get(outerClassName);
+        if (classes != null)
+        {
+            for (Clazz clazz : classes)
+            {
+                clazz.accept(classVisitor);
+            }
+        }
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz)
+    {
+        String className = clazz.getName();
+
+        // Add the class for each outer class name that it may have,
+        // e.g. "a/B$C$D" for "a/B" and for "a/B$C".
+        int packageEnd = className.lastIndexOf(TypeConstants.PACKAGE_SEPARATOR);
+        for (int index = className.indexOf(TypeConstants.INNER_CLASS_SEPARATOR, packageEnd + 1);
+             index >= 0;
+             index = className.indexOf(TypeConstants.INNER_CLASS_SEPARATOR, index + 1))
+        {
+            innerClasses.computeIfAbsent(className.substring(0, index), outerClassName -> new ArrayList<>())
+                        .add(clazz);
+        }
+    }
+}
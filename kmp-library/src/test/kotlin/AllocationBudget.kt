@@ -0,0 +1,31 @@
+package com.guardsquare.proguard.kotlin.printer
+
+import io.kotest.core.Tag
+import java.lang.management.ManagementFactory
+
+/**
+ * Tags the tests that check the allocations of the printer against a budget.
+ * They measure the allocated bytes of the current thread, so they don't run
+ * with the other tests, but in their own JVM, with the allocationBudgetTest
+ * task, which also shows the measured values.
+ */
+object AllocationBudget : Tag()
+
+/**
+ * Returns the bytes that the given block allocates in the current thread,
+ * on average over the given number of iterations, after a warmup, so the
+ * measurement doesn't include class loading or allocations that the JIT
+ * compiler would eliminate.
+ */
+fun allocatedBytesPerIteration(iterations: Int = 1000, warmupIterations: Int = 2000, block: () -> Unit): Long {
+    repeat(warmupIterations) { block() }
+
+    val threadMXBean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+    val threadId = Thread.currentThread().id
+
+    val allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId)
+    repeat(iterations) { block() }
+    val allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore
+
+    return allocated / iterations
+}
@@ -0,0 +1,40 @@
+import com.guardsquare.proguard.kotlin.printer.internal.InnerClassIndex
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.KotlinSource
+
+class InnerClassIndexTest : FunSpec({
+    test("Inner classes match the outer class name wildcard filter") {
+        val (programClassPool, _) = ClassPoolBuilder.fromSource(
+            KotlinSource(
+                "Test.kt",
+                """
+            package com.example
+
+            class Outer {
+                class Nested {
+                    inner class Inner
+                    fun lambda() = { x: Int -> x + 1 }
+                }
+                companion object
+            }
+
+            class OuterSibling
+                """
+            )
+        )
+
+        val innerClassIndex = InnerClassIndex(programClassPool)
+
+        programClassPool.classNames().forEach { className ->
+            val expected = mutableListOf<String>()
+            programClassPool.classesAccept("$className$*") { expected.add(it.name) }
+
+            val actual = mutableListOf<String>()
+            innerClassIndex.innerClassesAccept(className) { actual.add(it.name) }
+
+            actual shouldBe expected
+        }
+    }
+})
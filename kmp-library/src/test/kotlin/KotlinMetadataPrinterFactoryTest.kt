@@ -0,0 +1,66 @@
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinter
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinterFactory
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldNotBeSameInstanceAs
+import proguard.classfile.ClassPool
+import proguard.classfile.Clazz
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.KotlinSource
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class KotlinMetadataPrinterFactoryTest : FunSpec({
+    fun classPool(): ClassPool = ClassPoolBuilder.fromSource(
+        KotlinSource(
+            "Test.kt",
+            (0 until 20).joinToString("\n") { index ->
+                """
+                class Outer$index<T>(val t: T) {
+                    class Nested(val f: (Int) -> String = { it.toString() })
+                    inner class Inner<R>(val r: R)
+                    companion object
+                }
+                fun <T : Comparable<T>> function$index(a: Map<String, List<T>>, b: suspend (T) -> Unit): Outer$index<T>? = null
+                """.trimIndent()
+            }
+        )
+    ).programClassPool
+
+    // Print the expected output sequentially, from a separate class pool,
+    // so the class pool that is printed in parallel is still untouched.
+    val expectedClassPool = classPool()
+    expectedClassPool.classesAccept(ReferencedKotlinMetadataVisitor(KotlinMetadataPrinter(expectedClassPool)))
+    val expected = expectedClassPool.classNames().asSequence().associateWith { expectedClassPool.getClass(it).processingInfo }
+
+    val programClassPool = classPool()
+    val factory = KotlinMetadataPrinterFactory(programClassPool)
+
+    test("Printers of the factory print in parallel with the same output") {
+        val classes = mutableListOf<Clazz>()
+        programClassPool.classesAccept { classes.add(it) }
+
+        // Each worker prints its share of the classes with its own printer.
+        val workerCount = 4
+        val executor = Executors.newFixedThreadPool(workerCount)
+        try {
+            executor.invokeAll(
+                (0 until workerCount).map { worker ->
+                    Callable {
+                        val printer = ReferencedKotlinMetadataVisitor(factory.createPrinter())
+                        classes.filterIndexed { index, _ -> index % workerCount == worker }.forEach { it.accept(printer) }
+                    }
+                }
+            ).forEach { it.get() }
+        } finally {
+            executor.shutdown()
+        }
+
+        programClassPool.classNames().asSequence().associateWith { programClassPool.getClass(it).processingInfo } shouldBe expected
+    }
+
+    test("Each worker gets its own printer") {
+        factory.createPrinter() shouldNotBeSameInstanceAs factory.createPrinter()
+    }
+})
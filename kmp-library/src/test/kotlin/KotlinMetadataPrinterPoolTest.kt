@@ -0,0 +1,108 @@
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinter
+import com.guardsquare.proguard.kotlin.printer.KotlinMetadataPrinterPool
+import com.guardsquare.proguard.kotlin.printer.internal.ContextFrame
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import proguard.classfile.ClassPool
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor
+import proguard.classfile.visitor.ClassPoolFiller
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.KotlinSource
+
+class KotlinMetadataPrinterPoolTest : FunSpec({
+    fun classPool(source: String): ClassPool = ClassPoolBuilder.fromSource(KotlinSource("Test.kt", source.trimIndent())).programClassPool
+
+    fun print(programClassPool: ClassPool, printer: KotlinMetadataPrinter): Map<String, Any?> {
+        programClassPool.classesAccept(ReferencedKotlinMetadataVisitor(printer))
+        return programClassPool.classNames().asSequence().associateWith { programClassPool.getClass(it).processingInfo }
+    }
+
+    val firstClassPool = classPool(
+        """
+        class Outer<T>(val t: T) {
+            class Nested(val f: (Int) -> String = { it.toString() })
+            inner class Inner<R>(val r: R)
+            companion object
+        }
+        """
+    )
+
+    val secondClassPool = classPool(
+        """
+        sealed class Result<out T> {
+            data class Success<T>(val value: T) : Result<T>()
+            object Failure : Result<Nothing>()
+        }
+        fun <T> Result<T>.getOrNull(): T? = (this as? Result.Success<T>)?.value
+        """
+    )
+
+    test("A reset printer prints the same output as a new printer") {
+        val expectedFirst = print(firstClassPool, KotlinMetadataPrinter(firstClassPool))
+        val expectedSecond = print(secondClassPool, KotlinMetadataPrinter(secondClassPool))
+
+        val printer = KotlinMetadataPrinter(firstClassPool)
+        print(firstClassPool, printer)
+
+        printer.reset(secondClassPool)
+        print(secondClassPool, printer) shouldBe expectedSecond
+
+        printer.reset(firstClassPool)
+        print(firstClassPool, printer) shouldBe expectedFirst
+    }
+
+    test("A printer that is reset to the same class pool sees its changed classes") {
+        val oldClassPool = classPool("class Outer { class Old }")
+        val newClassPool = classPool("class Outer { class New }")
+        val expected = print(newClassPool, KotlinMetadataPrinter(newClassPool))
+
+        // Replace the classes, keeping the same number of classes.
+        val programClassPool = ClassPool()
+        oldClassPool.classesAccept(ClassPoolFiller(programClassPool))
+
+        val printer = KotlinMetadataPrinter(programClassPool)
+        print(programClassPool, printer)
+
+        programClassPool.clear()
+        newClassPool.classesAccept(ClassPoolFiller(programClassPool))
+
+        printer.reset(programClassPool)
+        print(programClassPool, printer) shouldBe expected
+    }
+
+    test("A printer can be reused after printing failed halfway") {
+        val expected = print(firstClassPool, KotlinMetadataPrinter(firstClassPool))
+
+        val printer = KotlinMetadataPrinter(firstClassPool)
+        print(firstClassPool, printer)
+
+        // Leave the state behind that an exception halfway a class would.
+        val clazz = secondClassPool.getClass("Result")
+        clazz.kotlinMetadataAccept { _, kotlinMetadata -> printer.context.push(ContextFrame(clazz, kotlinMetadata)) }
+        printer.pushStringBuilder()
+
+        printer.reset()
+        print(firstClassPool, printer) shouldBe expected
+    }
+
+    test("Released printers are reused") {
+        val pool = KotlinMetadataPrinterPool(2)
+
+        val printer = pool.borrow(firstClassPool)
+        pool.release(printer)
+        pool.idleCount() shouldBe 1
+
+        pool.borrow(secondClassPool) shouldBeSameInstanceAs printer
+        pool.idleCount() shouldBe 0
+    }
+
+    test("The pool keeps at most the maximum number of idle printers") {
+        val pool = KotlinMetadataPrinterPool(1)
+
+        val printers = List(3) { pool.borrow(firstClassPool) }
+        printers.forEach(pool::release)
+
+        pool.idleCount() shouldBe 1
+    }
+})
@@ -0,0 +1,69 @@
+package com.guardsquare.proguard.kotlin.printer
+
+import io.kotest.core.spec.style.FunSpec
+import io.kotest.matchers.longs.shouldBeLessThanOrEqual
+import io.kotest.matchers.string.shouldContain
+import io.kotest.matchers.string.shouldNotContain
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.KotlinSource
+
+/**
+ * Measures the printing of types through the public visitor, as the
+ * difference between two file facades that only differ in the nesting of
+ * their types. Both facades declare the same functions, type parameters and
+ * class names, so everything but the types allocates the same in both.
+ */
+class TypeAllocationTest : FunSpec({
+    tags(AllocationBudget)
+
+    test("Printing types only allocates the printed output") {
+        val (programClassPool, _) = ClassPoolBuilder.fromSource(
+            KotlinSource(
+                "Nested.kt",
+                """
+            fun nested(a: Map<String, List<Map<Int, Set<String?>>>>, b: List<out Comparable<in Number>>): Map<String, List<Int>> = TODO()
+            fun functions(a: (Int, String) -> List<Pair<Int, Long>>, b: Int.(Long) -> Unit, c: (() -> Unit)?): suspend () -> Unit = TODO()
+            fun <T : Comparable<T>, R> generic(a: Map<T, List<R>>, b: Array<out T>): Pair<T, R> = TODO()
+                """.trimIndent()
+            ),
+            KotlinSource(
+                "Simple.kt",
+                """
+            fun nested(a: Map<String, Set<Int>>, b: List<Comparable<Number>>): Int = TODO()
+            fun functions(a: (Int, String) -> List<Pair<Long, Unit>>, b: Int.(Long) -> Unit, c: (() -> Unit)?): suspend () -> Unit = TODO()
+            fun <T : Comparable<T>, R> generic(a: Array<T>, b: R): T = TODO()
+                """.trimIndent()
+            )
+        )
+
+        val nestedClass = programClassPool.getClass("NestedKt")
+        val simpleClass = programClassPool.getClass("SimpleKt")
+        val printer = ReferencedKotlinMetadataVisitor(KotlinMetadataPrinter(programClassPool))
+
+        val nestedAllocated = allocatedBytesPerIteration { nestedClass.accept(printer) }
+        val simpleAllocated = allocatedBytesPerIteration { simpleClass.accept(printer) }
+
+        val nestedOutput = nestedClass.processingInfo as String
+        val simpleOutput = simpleClass.processingInfo as String
+
+        // The type parameters are resolved through the context, like in any
+        // printed class, rather than through the fallback for unknown ones.
+        nestedOutput shouldContain "<T : Comparable<T>, R>"
+        nestedOutput shouldContain "Map<T, List<R>>"
+        nestedOutput shouldContain "Pair<T, R>"
+        nestedOutput shouldNotContain "unknown"
+
+        // The only extra allocation for the nested types is their share of
+        // the printed string. On 64-bit JVMs with compressed pointers, a
+        // string takes 24 bytes and its array 16 bytes plus at most 2 bytes
+        // per char, aligned to 8 bytes.
+        val allocated = nestedAllocated - simpleAllocated
+        val budget = stringSize(nestedOutput.length) - stringSize(simpleOutput.length)
+        println("Printing ${nestedOutput.length - simpleOutput.length} more chars of types allocated $allocated more bytes, within $budget bytes")
+
+        allocated shouldBeLessThanOrEqual budget
+    }
+})
+
+private fun stringSize(length: Int): Long = 24L + (16L + 2L * length + 7L) / 8L * 8L